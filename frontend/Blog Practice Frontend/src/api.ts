@@ -24,4 +24,40 @@ api.interceptors.request.use(
   }
 );
 
+// access token 過期（401/403）時，用 refresh token 換新的 Token 後重送一次
+// refresh token 只能使用一次，所以同時失敗的請求共用同一個換發請求
+let refreshing: Promise<string> | null = null;
+
+const refreshAccessToken = async (): Promise<string> => {
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!refreshToken) {
+    throw new Error('No refresh token');
+  }
+  const response = await axios.post(`${api.defaults.baseURL}/api/v1/auth/refresh`, { refreshToken });
+  localStorage.setItem('token', response.data.token);
+  localStorage.setItem('refreshToken', response.data.refreshToken);
+  return response.data.token;
+};
+
+api.interceptors.response.use(
+  (response) => response,
+  async (error) => {
+    const config = error.config;
+    const status = error.response?.status;
+    if ((status === 401 || status === 403) && config && !config._retry
+        && !config.url?.startsWith('/api/v1/auth/') && localStorage.getItem('refreshToken')) {
+      config._retry = true;
+      try {
+        refreshing = refreshing ?? refreshAccessToken().finally(() => { refreshing = null; });
+        const token = await refreshing;
+        config.headers.Authorization = `Bearer ${token}`;
+        return api(config);
+      } catch {
+        return Promise.reject(error);
+      }
+    }
+    return Promise.reject(error);
+  }
+);
+
 export default api;
\ No newline at end of file
@@ -3,6 +3,7 @@
 
 import { createContext, useContext, useState, useEffect } from 'react';
 import type { ReactNode } from 'react';
+import api from '../api';
 
 // 定義認證上下文的類型
 interface AuthContextType {
@@ -44,9 +45,12 @@ export const AuthProvider = ({ children }: { children: ReactNode }) => {
 
   // 登出函數
   const logout = () => {
+    // 通知後端撤銷 access token 與 refresh token，失敗也照樣清除本地狀態
+    api.post('/api/v1/auth/logout', { refreshToken: localStorage.getItem('refreshToken') }).catch(() => {});
     setUserEmail(null);
     setUserName(null);
     localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
     localStorage.removeItem('userEmail');
     localStorage.removeItem('userName');
   };
@@ -23,7 +23,7 @@ interface TagDto {
 interface Post {
   id: string;
   title: string;
-  content: string;
+  excerpt: string;
   author: AuthorDto;
   category: CategoryDto;
   tags: TagDto[];
@@ -138,10 +138,9 @@ const Home = () => {
                 <p className="text-gray-500 -mt-1">
                   作者: {post.author?.name || '未知作者'}
                 </p>
-                <div 
-                  className="text-gray-700 mt-3 line-clamp-3"
-                  dangerouslySetInnerHTML={{ __html: post.content }}
-                />
+                <p className="text-gray-700 mt-3 line-clamp-3">
+                  {post.excerpt}
+                </p>
 
                 <div className="mt-5">
                   <div className="flex flex-wrap items-center text-sm text-gray-500 gap-3 mb-2">
@@ -23,10 +23,11 @@ const Login = () => {
       const response = await api.post('/api/v1/auth/login', { email, password });
       
       // 從響應中提取數據
-      const { token, email: userEmail, name } = response.data;
+      const { token, refreshToken, email: userEmail, name } = response.data;
       
       // 保存 token 和用戶信息到 localStorage
       localStorage.setItem('token', token);
+      localStorage.setItem('refreshToken', refreshToken);
       localStorage.setItem('userEmail', userEmail);
       if (name) {
         localStorage.setItem('userName', name);
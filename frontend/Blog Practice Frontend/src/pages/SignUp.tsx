@@ -19,8 +19,9 @@ const SignUp = () => {
     e.preventDefault(); // 阻止頁面重新載入
     try {
       const response = await api.post('/api/v1/auth/register', { email, password, name });
-      const { token, email: returnedEmail, name: returnedName } = response.data; // 取得 JWT 與名稱
+      const { token, refreshToken, email: returnedEmail, name: returnedName } = response.data; // 取得 JWT 與名稱
       localStorage.setItem('token', token); // 儲存到 localStorage
+      localStorage.setItem('refreshToken', refreshToken);
       setUserEmail(returnedEmail || email); // 儲存 email
       setUserName(returnedName || name);
       setError(null); // 清除錯誤訊息
@@ -0,0 +1,109 @@
+package com.practice.demo.Config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.practice.demo.domain.dtos.PostDto;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快取設定，實際的快取實作（Caffeine）、容量與 TTL 設定在 application.properties 的 spring.cache.*
+ *
+ * order = HIGHEST_PRECEDENCE 讓快取攔截器包在 @Transactional 外層，
+ * 所以 @CacheEvict 會在交易 commit 之後才清除快取，避免其他請求在 commit 前把舊資料重新放回快取。
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    // 分類列表（含文章數）
+    public static final String CATEGORIES = "categories";
+
+    // 依 id 查詢的分類（CategoryDto）
+    public static final String CATEGORY_BY_ID = "categoryById";
+
+    // 標籤列表（含文章數）
+    public static final String TAGS = "tags";
+
+    // 依 id 查詢的標籤（TagDto）
+    public static final String TAG_BY_ID = "tagById";
+
+    // 文章詳情（已 mapping 好的 PostDto）
+    public static final String POST_BY_ID = "postById";
+
+    // 依 id 查詢的作者（AuthorDto），短 TTL
+    public static final String USER_BY_ID = "userById";
+
+    // 每筆快取除了 content 以外的固定估算成本（id、title、author、category、tags 等）
+    private static final int POST_ENTRY_OVERHEAD = 512;
+
+    /**
+     * 文章詳情快取不用筆數上限，而是以 content 長度估算每筆的權重，
+     * 總權重超過 maximum-weight 時淘汰，避免少數超長文章佔滿記憶體。
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> postCacheCustomizer(
+            @Value("${blog.cache.posts.maximum-weight:20000000}") long maximumWeight,
+            @Value("${blog.cache.posts.expire-after-write:30m}") Duration expireAfterWrite) {
+
+        return cacheManager -> cacheManager.registerCustomCache(POST_BY_ID, Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Object key, Object value) -> weigh(value))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build());
+    }
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> userCacheCustomizer(
+            @Value("${blog.cache.users.maximum-size:10000}") long maximumSize,
+            @Value("${blog.cache.users.expire-after-write:60s}") Duration expireAfterWrite) {
+
+        return cacheManager -> cacheManager.registerCustomCache(USER_BY_ID, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build());
+    }
+
+    /**
+     * Micrometer 只會替 LoadingCache 註冊載入時間指標，而 @Cacheable(sync = true) 是透過 Cache.get(key, loader) 載入，
+     * 所以這裡自行把 Caffeine 統計的載入次數與總載入時間註冊成 cache.load.duration。
+     * 命中率可由 cache.gets 的 result=hit / miss 計算。
+     */
+    @Bean
+    public MeterBinder postCacheLoadMetrics(CacheManager cacheManager) {
+        return registry -> {
+            CaffeineCache cache = (CaffeineCache) cacheManager.getCache(POST_BY_ID);
+            if (cache == null) {
+                return;
+            }
+
+            FunctionTimer.builder("cache.load.duration", cache.getNativeCache(),
+                            nativeCache -> nativeCache.stats().loadCount(),
+                            nativeCache -> nativeCache.stats().totalLoadTime(),
+                            TimeUnit.NANOSECONDS)
+                    .tags("cache", POST_BY_ID, "name", POST_BY_ID)
+                    .description("Time spent loading post details into the cache")
+                    .register(registry);
+        };
+    }
+
+    private static int weigh(Object value) {
+        if (value instanceof PostDto post && post.getContent() != null) {
+            return POST_ENTRY_OVERHEAD + post.getContent().length();
+        }
+        return POST_ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,25 @@
+package com.practice.demo.Config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * JWT 金鑰設定。
+ *
+ * secret 是原本的單一金鑰，key id 為 "default"，沒有 kid header 的舊 Token 也用它驗證。
+ * keys 可以設定多把金鑰，每把都能用來驗證；簽發時使用 activeFrom 已到且最晚生效的那一把，
+ * 所以事先加入一把 activeFrom 為未來時間的新金鑰，到時間就會自動輪替。
+ * 舊金鑰要等它簽出的 Token 全部過期後才能從設定中移除。
+ */
+@ConfigurationProperties(prefix = "jwt")
+public record JwtProperties(String secret, List<Key> keys) {
+
+    public JwtProperties {
+        keys = keys == null ? List.of() : List.copyOf(keys);
+    }
+
+    public record Key(String id, String secret, Instant activeFrom) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.practice.demo.Config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//啟用 @Scheduled 的背景工作（例如 TokenRevocationList 的同步）
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,9 +1,15 @@
 package com.practice.demo.Config;
 
+import com.practice.demo.controllers.PostController;
 import com.practice.demo.repositories.UserRepository;
 import com.practice.demo.security.BlogUserDetailService;
 import com.practice.demo.security.JwtAuthenticationFilter;
 import com.practice.demo.services.AuthenticationService;
+import jakarta.servlet.DispatcherType;
+import com.practice.demo.security.TunedArgon2PasswordEncoder;
+import com.practice.demo.security.TunedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,7 +18,7 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -20,8 +26,11 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
+@EnableConfigurationProperties(JwtProperties.class)
 public class SecurityConfig {
 
     @Bean
@@ -29,8 +38,9 @@ public class SecurityConfig {
         return new JwtAuthenticationFilter(authenticationService);
     }
 
+    //同時實作 UserDetailsPasswordService，登入成功且雜湊需要升級時，DaoAuthenticationProvider 會呼叫它寫回新的雜湊
     @Bean
-    public UserDetailsService userDetailsService(UserRepository userRepository){
+    public BlogUserDetailService userDetailsService(UserRepository userRepository){
         return new BlogUserDetailService(userRepository);
     }
 
@@ -54,8 +64,15 @@ public class SecurityConfig {
                 // 允許所有人訪問登入和註冊端點
                 .requestMatchers(HttpMethod.POST, "/api/v1/auth/login").permitAll()
                 .requestMatchers(HttpMethod.POST, "/api/v1/auth/register").permitAll()
+                // 換發與登出用 Token 本身驗證，access token 過期時也要能呼叫
+                .requestMatchers(HttpMethod.POST, "/api/v1/auth/refresh").permitAll()
+                .requestMatchers(HttpMethod.POST, "/api/v1/auth/logout").permitAll()
+                // 串流回應（匯出）寫完後的 async dispatch 不再重新驗證，驗證已在原本的請求完成
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // 草稿必須是登入後才能查看，這行寫在前面，會先被匹配到
                 .requestMatchers(HttpMethod.GET, "/api/v1/posts/drafts").authenticated()
+                // 匯出需要登入，避免匿名的大量讀取
+                .requestMatchers(HttpMethod.GET, "/api/v1/posts/export").authenticated()
                 // 公開訪問的 API 端點
                 .requestMatchers(HttpMethod.GET, "/api/v1/posts/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/v1/categories/**").permitAll()
@@ -87,9 +104,11 @@ public class SecurityConfig {
         // 允許的前端網址（開發環境）
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:5173"));
         // 允許的 HTTP 方法
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         // 允許的請求標頭
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // 允許前端讀取的回應標頭（分頁用的下一頁 cursor）
+        configuration.setExposedHeaders(Arrays.asList(PostController.NEXT_CURSOR_HEADER, "ETag", "Last-Modified"));
         // 允許發送認證信息（如 cookies）
         configuration.setAllowCredentials(true);
 
@@ -99,9 +118,29 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * 密碼編碼器，雜湊字串帶有 {id} 前綴（例如 {bcrypt}$2a$10$...）。
+     * blog.security.password.encoder 決定新雜湊使用的演算法（bcrypt 或 argon2），兩種既有的雜湊都能驗證。
+     * 演算法或成本參數與設定不同的雜湊，會在使用者下次登入成功時自動重新雜湊，不需要重設密碼。
+     * 參數可以用測試目錄的 benchmarks.PasswordEncoderCalibration 在實際機器上校準。
+     */
     @Bean
-    public PasswordEncoder passwordEncoder(){
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${blog.security.password.encoder:bcrypt}") String encoderId,
+            @Value("${blog.security.password.bcrypt.strength:10}") int bcryptStrength,
+            @Value("${blog.security.password.argon2.memory-kib:19456}") int argon2MemoryKib,
+            @Value("${blog.security.password.argon2.iterations:2}") int argon2Iterations,
+            @Value("${blog.security.password.argon2.parallelism:1}") int argon2Parallelism){
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new TunedBCryptPasswordEncoder(bcryptStrength));
+        encoders.put("argon2", new TunedArgon2PasswordEncoder(argon2MemoryKib, argon2Iterations, argon2Parallelism));
+
+        if(!encoders.containsKey(encoderId)){
+            throw new IllegalStateException("Unsupported password encoder: " + encoderId);
+        }
+
+        return new DelegatingPasswordEncoder(encoderId, encoders);
     }
 
 
@@ -2,16 +2,23 @@ package com.practice.demo.controllers;
 
 import com.practice.demo.domain.dtos.AuthResponse;
 import com.practice.demo.domain.dtos.LoginRequest;
+import com.practice.demo.security.BlogUserDetails;
+import com.practice.demo.security.LoginThrottle;
 import com.practice.demo.services.AuthenticationService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/v1/auth")
 @RequiredArgsConstructor
@@ -19,46 +26,75 @@ public class AuthController {
 
     private final AuthenticationService authenticationService;
 
+    private final LoginThrottle loginThrottle;
+
     /**
      * Login endpoint, responsible for generating a JWT token given a valid
      * email and password combination.
      *
      * @param loginRequest the email and password of the user to login
      *
-     * @return a ResponseEntity containing the generated JWT token, its expiration
-     *         time, the user's email address and name, if any
+     * @return a ResponseEntity containing the generated JWT access token, a
+     *         refresh token, the access token's expiration time, the user's
+     *         email address and name, if any. The password check
+     *         runs on the password hashing executor, so the request thread is
+     *         released while it is pending.
      */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody LoginRequest loginRequest){
-        UserDetails userDetails = authenticationService.authenticate(
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@RequestBody LoginRequest loginRequest, HttpServletRequest request){
+        loginThrottle.acquire(request.getRemoteAddr(), loginRequest.getEmail());
+
+        return authenticationService.authenticate(
                 loginRequest.getEmail(),
                 loginRequest.getPassword()
+        ).thenApply(userDetails -> this.toResponse(authenticationService.issueTokens(userDetails)));
+    }
 
-        );
+    @PostMapping("/register")
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@RequestBody RegisterRequest req, HttpServletRequest request){
+        loginThrottle.acquire(request.getRemoteAddr(), req.getEmail());
 
-        String tokenValue = authenticationService.generateToken(userDetails);
+        return authenticationService.register(req.getEmail(), req.getPassword(), req.getName())
+                .thenApply(userDetails -> this.toResponse(authenticationService.issueTokens(userDetails)));
+    }
 
-        AuthResponse authResponse = AuthResponse.builder()
-                .token(tokenValue)
-                .expiresIn(86400)
-                .email(userDetails.getUsername())
-                .name((userDetails instanceof com.practice.demo.security.BlogUserDetails)
-                        ? ((com.practice.demo.security.BlogUserDetails) userDetails).getUser().getName()
-                        : null)
-                .build();
+    /**
+     * Exchanges a refresh token for a new access token and refresh token.
+     * Each refresh token can be used only once.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest req){
+        return this.toResponse(authenticationService.refresh(req.getRefreshToken()));
+    }
 
-        return ResponseEntity.ok(authResponse);
+    /**
+     * Revokes the access token in the Authorization header and the refresh
+     * token in the body, if given.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshRequest req){
+
+        String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7)
+                : null;
+        authenticationService.logout(accessToken, req == null ? null : req.getRefreshToken());
+
+        return ResponseEntity.noContent().build();
     }
 
-    @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@RequestBody RegisterRequest req){
-        var userDetails = authenticationService.register(req.getEmail(), req.getPassword(), req.getName());
-        String tokenValue = authenticationService.generateToken(userDetails);
+    private ResponseEntity<AuthResponse> toResponse(AuthenticationService.AuthTokens tokens){
+        UserDetails userDetails = tokens.user();
+
         return ResponseEntity.ok(AuthResponse.builder()
-                .token(tokenValue)
-                .expiresIn(86400)
+                .token(tokens.accessToken())
+                .refreshToken(tokens.refreshToken())
+                .expiresIn(tokens.expiresIn())
                 .email(userDetails.getUsername())
-                .name(req.getName())
+                .name((userDetails instanceof BlogUserDetails blogUserDetails)
+                        ? blogUserDetails.getName()
+                        : null)
                 .build());
     }
 
@@ -69,4 +105,9 @@ public class AuthController {
         private String name;
     }
 
+    @Data
+    public static class RefreshRequest{
+        private String refreshToken;
+    }
+
 }
@@ -4,11 +4,13 @@ import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.dtos.CreateCategoryRequest;
 import com.practice.demo.domain.entities.Category;
 import com.practice.demo.services.CategoryService;
+import com.practice.demo.services.TaxonomyVersion;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -20,11 +22,22 @@ public class CategoryController {
 
     private final CategoryService categoryService;
 
+    private final TaxonomyVersion taxonomyVersion;
+
     @GetMapping
-    public ResponseEntity<List<CategoryDto>> listCategories(){
+    public ResponseEntity<List<CategoryDto>> listCategories(WebRequest webRequest){
+
+        String eTag = taxonomyVersion.getETag();
+        long lastModified = taxonomyVersion.getLastModified().toEpochMilli();
+        if(ConditionalRequests.isNotModified(webRequest, eTag, lastModified)){
+            return ConditionalRequests.notModified(eTag, lastModified);
+        }
 
         List<CategoryDto> categories = categoryService.listCategories();
-        return ResponseEntity.ok(categories);
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .body(categories);
     }
 
     @PostMapping
@@ -0,0 +1,77 @@
+package com.practice.demo.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+//條件式 GET 的共用邏輯：先用輕量的版本資訊比對 If-None-Match / If-Modified-Since，符合時直接回 304，不執行 mapping 與序列化
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    static String eTag(String version) {
+        return "\"" + version + "\"";
+    }
+
+    //If-Match 是否符合目前的 ETag（RFC 9110 13.1.1）：* 符合任何存在的資源；否則清單中任一個 ETag 與目前的 ETag 強比較相同即符合，
+    //弱 ETag（W/"3"）在強比較下不會符合，只能用於 If-None-Match；格式錯誤時拋出 IllegalArgumentException（400）
+    static boolean ifMatch(String ifMatch, String currentETag) {
+        String value = ifMatch.strip();
+        if (value.equals("*")) {
+            return true;
+        }
+
+        boolean matched = false;
+        int tags = 0;
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+
+            boolean weak = value.startsWith("W/", i);
+            int start = weak ? i + 2 : i;
+            int end = start < value.length() && value.charAt(start) == '"' ? value.indexOf('"', start + 1) : -1;
+            if (end < 0) {
+                throw new IllegalArgumentException("Invalid If-Match header, expected * or a list of ETags");
+            }
+
+            if (!weak && value.substring(start, end + 1).equals(currentETag)) {
+                matched = true;
+            }
+            tags++;
+            i = end + 1;
+        }
+
+        if (tags == 0) {
+            throw new IllegalArgumentException("Invalid If-Match header, expected * or a list of ETags");
+        }
+        return matched;
+    }
+
+    static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    //lastModified 小於 0 代表不使用 Last-Modified，只比對 ETag
+    static boolean isNotModified(WebRequest request, String eTag, long lastModified) {
+        return lastModified < 0
+                ? request.checkNotModified(eTag)
+                : request.checkNotModified(eTag, lastModified);
+    }
+
+    static <T> ResponseEntity<T> notModified(String eTag, long lastModified) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag);
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+
+        return response.build();
+    }
+}
@@ -1,19 +1,38 @@
 package com.practice.demo.controllers;
 
+import com.practice.demo.domain.CursorPage;
+import com.practice.demo.domain.PostStatus;
 import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
 import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.PostImportResultDto;
+import com.practice.demo.domain.dtos.PostSearchResultDto;
+import com.practice.demo.domain.dtos.PostSuggestionDto;
+import com.practice.demo.domain.dtos.PostSummaryDto;
 import com.practice.demo.domain.dtos.UpdatePostRequestDto;
 import com.practice.demo.domain.entities.CreatePostRequest;
-import com.practice.demo.domain.entities.User;
+import com.practice.demo.domain.projections.PostVersionView;
 import com.practice.demo.services.PostService;
-import com.practice.demo.services.UserService;
+import com.practice.demo.services.PublishedPostsVersion;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,25 +45,93 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class PostController {
 
     private final PostService postService;
-    private final UserService userService;
+    private final PublishedPostsVersion publishedPostsVersion;
+    private final ObjectMapper objectMapper;
+
+    //下一頁的 cursor 放在 X-Next-Cursor header，回應本體維持 List
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @GetMapping
-    public ResponseEntity<List<PostDto>> getAllPosts(
+    public ResponseEntity<List<PostSummaryDto>> getAllPosts(
             @RequestParam(required = false) UUID categoryId,
-            @RequestParam(required = false) UUID tagId){
+            @RequestParam(required = false) UUID tagId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest){
+
+        //ETag 來自記憶體中的版本號（見 PublishedPostsVersion），每一頁都不需要額外的查詢
+        String eTag = publishedPostsVersion.getETag();
+        if(ConditionalRequests.isNotModified(webRequest, eTag, -1)){
+            return ConditionalRequests.notModified(eTag, -1);
+        }
 
-        List<PostDto> postDtos = postService.getAllPosts(categoryId, tagId);
+        CursorPage<PostSummaryDto> page = postService.getAllPosts(categoryId, tagId, cursor, size);
+
+        return this.toResponse(page, eTag);
+    }
+
+    //全文搜尋已發布的文章，依相關度排序，標題中符合的字詞權重高於內容
+    //q 為必填（最多 200 字），支援 "片語"、OR 與 -排除（PostgreSQL）；下一頁的 cursor 在 X-Next-Cursor header
+    @GetMapping(path = "/search")
+    public ResponseEntity<List<PostSearchResultDto>> searchPosts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        CursorPage<PostSearchResultDto> page = postService.searchPosts(q, cursor, size);
+
+        return this.toResponse(page, null);
+    }
 
-        return ResponseEntity.ok(postDtos);
+    //邊輸入邊搜尋：從記憶體中的索引找出已發布的文章標題，只回傳最相關的 size 筆，沒有下一頁
+    //最後一個字詞後面沒有空白時以前綴比對（例如 q=spr 找到 spring）
+    @GetMapping(path = "/search/suggest")
+    public ResponseEntity<List<PostSuggestionDto>> suggestPosts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(postService.suggestPosts(q, size));
     }
 
     @GetMapping(path = "/drafts")
-    public ResponseEntity<List<PostDto>> getDrafts(@RequestAttribute UUID userId){
-        User loggedInUser = userService.getUserById(userId);
+    public ResponseEntity<List<PostSummaryDto>> getDrafts(
+            @RequestAttribute UUID userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        CursorPage<PostSummaryDto> page = postService.getDraftPosts(userId, cursor, size);
 
-        List<PostDto> postDtos = postService.getDraftPosts(loggedInUser);
+        return this.toResponse(page, null);
+    }
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
 
-        return ResponseEntity.ok(postDtos);
+    private static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+    //匯出文章：每行一筆 PostDto（NDJSON），邊查邊寫，不會在記憶體組出完整列表
+    //since 為 ISO 格式的時間（例如 2025-01-01T00:00:00），只匯出之後有更新的文章，用於增量匯出
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportPosts(
+            @RequestAttribute UUID userId,
+            @RequestParam(required = false) PostStatus status,
+            @RequestParam(required = false) UUID categoryId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since){
+
+        StreamingResponseBody body = outputStream -> {
+            try(JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)){
+                //每行一筆，換行自己寫，不使用 Jackson 預設的 root value 分隔字元（空白）
+                generator.setRootValueSeparator(null);
+                postService.exportPosts(userId, status, categoryId, since, post -> {
+                    try {
+                        generator.writeObject(post);
+                        generator.writeRaw('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
     }
 
     @PostMapping
@@ -52,26 +139,99 @@ public class PostController {
             @Valid @RequestBody CreatePostRequestDto createPostRequestDto,
             @RequestAttribute UUID userId){
 
-        User loggedInUser = userService.getUserById(userId);
-
-        PostDto createdPostDto = postService.createPost(loggedInUser, createPostRequestDto);
+        PostDto createdPostDto = postService.createPost(userId, createPostRequestDto);
 
         return new ResponseEntity<>(createdPostDto, HttpStatus.CREATED);
     }
 
+    //批次匯入文章：請求本體為 CreatePostRequestDto 的 JSON 陣列，或每行一筆的 NDJSON，作者為登入者
+    //每 blog.posts.import.chunk-size 筆提交一次，單筆失敗（驗證、分類/標籤不存在、標題重複）不會中止匯入，在回應中逐筆列出
+    @PostMapping(path = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<PostImportResultDto> importPosts(
+            @RequestAttribute UUID userId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+
+        PostImportReader reader = NDJSON.isCompatibleWith(contentType)
+                ? PostImportReader.ndjson(objectMapper, body)
+                : PostImportReader.jsonArray(objectMapper, body);
+
+        return ResponseEntity.ok(postService.importPosts(userId, reader));
+    }
+
+    //整篇更新需要帶上讀取時的版本：If-Match（GET 回應的 ETag）或請求本體的 version，If-Match 優先
+    //版本不符時回 409（本體的 version）或 412（If-Match），客戶端應重新讀取後再修改
+    //If-Match 以目前的版本判斷（* 與 ETag 清單），符合時以目前的版本更新，判斷之後的並行修改仍由 version 擋下
     @PutMapping(path = "/{id}")
     public ResponseEntity<PostDto> updatePost(
             @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody UpdatePostRequestDto updatePostRequestDto){
+        if(ifMatch != null){
+            updatePostRequestDto.setVersion(this.matchCurrentVersion(id, ifMatch));
+        } else if(updatePostRequestDto.getVersion() == null){
+            throw new IllegalArgumentException("Post version is required, send the version or ETag from the last read as version or If-Match");
+        }
+
         PostDto updatedPostDto = postService.updatePost(id, updatePostRequestDto);
-        return ResponseEntity.ok(updatedPostDto);
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(String.valueOf(updatedPostDto.getVersion())))
+                .body(updatedPostDto);
+    }
+
+    //部分更新：只送出要修改的欄位，例如 {"status":"PUBLISHED"} 發布草稿時不會重寫內容
+    //If-Match 可省略；有帶時與整篇更新相同，不符合目前的版本回 412
+    @PatchMapping(path = "/{id}")
+    public ResponseEntity<PostDto> patchPost(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody PatchPostRequestDto patchPostRequestDto){
+        Long expectedVersion = ifMatch == null ? null : this.matchCurrentVersion(id, ifMatch);
+
+        PostDto patchedPostDto = postService.patchPost(id, expectedVersion, patchPostRequestDto);
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(String.valueOf(patchedPostDto.getVersion())))
+                .body(patchedPostDto);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<PostDto> getPost(@PathVariable UUID id) {
+    public ResponseEntity<PostDto> getPost(@PathVariable UUID id, WebRequest webRequest) {
+        //先只查 updatedAt 與 version 判斷快取是否仍有效，有效就回 304，不載入文章內容
+        //ETag 是文章的 version，也是 PUT 的 If-Match 要帶的值
+        PostVersionView version = postService.getPostVersion(id);
+        long lastModified = ConditionalRequests.toEpochMilli(version.updatedAt());
+        String eTag = ConditionalRequests.eTag(String.valueOf(version.version()));
+
+        if(ConditionalRequests.isNotModified(webRequest, eTag, lastModified)){
+            return ConditionalRequests.notModified(eTag, lastModified);
+        }
+
         PostDto postDto = postService.getPost(id);
-        return ResponseEntity.ok(postDto);
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .body(postDto);
+    }
+
+    //If-Match 以目前的版本判斷，符合時回傳目前的版本，交給 service 在載入文章後再比對一次
+    private long matchCurrentVersion(UUID id, String ifMatch){
+        long currentVersion = postService.getPostVersion(id).version();
+        if(!ConditionalRequests.ifMatch(ifMatch, ConditionalRequests.eTag(String.valueOf(currentVersion)))){
+            throw new OptimisticLockingFailureException("If-Match does not match the current version of post " + id);
+        }
+        return currentVersion;
+    }
+
+    private <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page, String eTag){
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(eTag != null){
+            response.eTag(eTag);
+        }
+        if(page.getNextCursor() != null){
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+
+        return response.body(page.getItems());
     }
-    
 
 }
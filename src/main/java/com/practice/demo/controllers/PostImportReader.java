@@ -0,0 +1,122 @@
+package com.practice.demo.controllers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.demo.domain.PostImportItem;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// 逐筆讀取批次匯入的文章（JSON 陣列或 NDJSON），邊讀邊匯入，不會把整個請求讀進記憶體
+// 單筆內容無法轉成 CreatePostRequestDto（例如 UUID 格式錯誤）時變成該筆的失敗；
+// JSON 陣列本身的語法錯誤無法跳過，記為一筆失敗後停止讀取，NDJSON 則只跳過該行
+final class PostImportReader implements Iterator<PostImportItem> {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser arrayParser;
+    private final BufferedReader lines;
+
+    private int index;
+    private PostImportItem next;
+    private boolean finished;
+
+    private PostImportReader(ObjectMapper objectMapper, JsonParser arrayParser, BufferedReader lines) {
+        this.objectMapper = objectMapper;
+        this.arrayParser = arrayParser;
+        this.lines = lines;
+    }
+
+    // 請求本體不是 JSON 陣列時拋出 IllegalArgumentException（400），此時還沒有匯入任何文章
+    static PostImportReader jsonArray(ObjectMapper objectMapper, InputStream body) throws IOException {
+        JsonParser parser = objectMapper.createParser(body);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Request body must be a JSON array of posts");
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Request body must be a JSON array of posts");
+        }
+        return new PostImportReader(objectMapper, parser, null);
+    }
+
+    static PostImportReader ndjson(ObjectMapper objectMapper, InputStream body) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return new PostImportReader(objectMapper, null, reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = arrayParser != null ? readArrayElement() : readLine();
+            if (next == null) {
+                finished = true;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public PostImportItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PostImportItem item = next;
+        next = null;
+        return item;
+    }
+
+    private PostImportItem readArrayElement() {
+        try {
+            JsonToken token = arrayParser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            return toItem(objectMapper.readTree(arrayParser));
+        } catch (JsonProcessingException ex) {
+            finished = true;
+            return PostImportItem.failed(index++, "Malformed JSON, remaining items were not read");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private PostImportItem readLine() {
+        try {
+            String line;
+            do {
+                line = lines.readLine();
+            } while (line != null && line.isBlank());
+
+            if (line == null) {
+                return null;
+            }
+
+            try {
+                return toItem(objectMapper.readTree(line));
+            } catch (JsonProcessingException ex) {
+                return PostImportItem.failed(index++, "Malformed JSON");
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private PostImportItem toItem(JsonNode node) {
+        int itemIndex = index++;
+        try {
+            return PostImportItem.of(itemIndex, objectMapper.treeToValue(node, CreatePostRequestDto.class));
+        } catch (JsonProcessingException ex) {
+            return PostImportItem.failed(itemIndex, "Invalid post: " + ex.getOriginalMessage());
+        }
+    }
+}
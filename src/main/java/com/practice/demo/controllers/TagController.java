@@ -3,10 +3,12 @@ package com.practice.demo.controllers;
 import com.practice.demo.domain.dtos.CreateTagResponse;
 import com.practice.demo.domain.dtos.TagDto;
 import com.practice.demo.services.TagService;
+import com.practice.demo.services.TaxonomyVersion;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -18,10 +20,22 @@ public class TagController {
 
     private final TagService tagService;
 
+    private final TaxonomyVersion taxonomyVersion;
+
     @GetMapping
-    public ResponseEntity<List<TagDto>> getAllTags(){
+    public ResponseEntity<List<TagDto>> getAllTags(WebRequest webRequest){
+
+        String eTag = taxonomyVersion.getETag();
+        long lastModified = taxonomyVersion.getLastModified().toEpochMilli();
+        if(ConditionalRequests.isNotModified(webRequest, eTag, lastModified)){
+            return ConditionalRequests.notModified(eTag, lastModified);
+        }
+
         List<TagDto> tags = tagService.getTags();
-        return ResponseEntity.ok(tags);
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .body(tags);
     }
 
     @PostMapping
@@ -0,0 +1,16 @@
+package com.practice.demo.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// 一頁游標分頁的結果，nextCursor 為 null 代表已經是最後一頁
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    private String nextCursor;
+}
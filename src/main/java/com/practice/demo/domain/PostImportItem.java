@@ -0,0 +1,15 @@
+package com.practice.demo.domain;
+
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+
+// 批次匯入的一筆文章，index 為在請求中的位置（從 0 開始）；讀取失敗時 request 為 null，error 為原因
+public record PostImportItem(int index, CreatePostRequestDto request, String error) {
+
+    public static PostImportItem of(int index, CreatePostRequestDto request) {
+        return new PostImportItem(index, request, null);
+    }
+
+    public static PostImportItem failed(int index, String error) {
+        return new PostImportItem(index, null, error);
+    }
+}
@@ -0,0 +1,39 @@
+package com.practice.demo.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+// 搜尋結果的游標，內容是最後一筆的相關度（rank）+ id，對前端來說是不透明的字串
+// rank 以 Float.toString 保存，解碼後與資料庫重新計算的 rank（real）完全相同，seek 條件不會漏掉或重複結果
+public final class PostSearchCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private PostSearchCursor() {
+    }
+
+    public record Position(float rank, UUID id) {
+    }
+
+    public static String encode(float rank, UUID id) {
+        String raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 沒有 cursor 代表第一頁，回傳 null；格式錯誤會拋出 IllegalArgumentException（400）
+    public static Position decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.indexOf(SEPARATOR);
+
+            return new Position(Float.parseFloat(raw.substring(0, index)), UUID.fromString(raw.substring(index + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+    }
+}
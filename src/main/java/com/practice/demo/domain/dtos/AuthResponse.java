@@ -12,6 +12,8 @@ import lombok.NoArgsConstructor;
 public class AuthResponse {
 
     private String token;
+    private String refreshToken;
+    //access token 的有效秒數
     private long expiresIn;
     private String name;
     private String email;
@@ -0,0 +1,38 @@
+package com.practice.demo.domain.dtos;
+
+import java.util.Set;
+import java.util.UUID;
+
+import com.practice.demo.domain.PostStatus;
+
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.Data;
+
+//部分更新：只有不是 null 的欄位會被套用；tagsIds 為空集合代表移除所有標籤
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PatchPostRequestDto {
+
+    @Pattern(regexp = ".*\\S.*", message = "Title is required")
+    @Size(min = 3, max = 200, message = "Title must be between {min} to {max} characters")
+    private String title;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "Content is required")
+    @Size(min = 10, max = 50000, message = "Content must be between {min} to {max} characters")
+    private String content;
+
+    private UUID categoryId;
+
+    @Size(max = 10, message = "Maximum {max} tags allowed")
+    private Set<UUID> tagsIds;
+
+    private PostStatus status;
+
+
+}
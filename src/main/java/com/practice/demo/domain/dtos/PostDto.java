@@ -26,6 +26,7 @@ public class PostDto {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private PostStatus postStatus;
+    private Long version;
 
 
 }
@@ -0,0 +1,31 @@
+package com.practice.demo.domain.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostImportResultDto {
+    private int imported;
+    private int failed;
+    private List<Failure> failures;
+
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure{
+        private int index;
+        private String title;
+        private String message;
+    }
+
+
+}
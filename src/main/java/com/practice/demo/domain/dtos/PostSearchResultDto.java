@@ -0,0 +1,21 @@
+package com.practice.demo.domain.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//一筆搜尋結果：文章卡片加上標示出符合字詞的標題與內容片段
+//highlightedTitle、snippet 已做 HTML escape，只有符合的字詞以 <mark></mark> 包住，可以直接當作 HTML 顯示
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PostSearchResultDto {
+
+    private PostSummaryDto post;
+    private String highlightedTitle;
+    private String snippet;
+    private float score;
+
+}
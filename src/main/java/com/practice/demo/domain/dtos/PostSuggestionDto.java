@@ -0,0 +1,21 @@
+package com.practice.demo.domain.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+//邊輸入邊搜尋的一筆建議：只有記憶體索引中的標題，不查詢資料庫
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PostSuggestionDto {
+
+    private UUID id;
+    private String title;
+    private float score;
+
+}
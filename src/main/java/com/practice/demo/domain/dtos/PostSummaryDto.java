@@ -0,0 +1,31 @@
+package com.practice.demo.domain.dtos;
+
+import com.practice.demo.domain.PostStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+//文章列表卡片使用，與 PostDto 相同但以 excerpt 取代完整的 content
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PostSummaryDto {
+
+    private UUID id;
+    private String title;
+    private String excerpt;
+    private AuthorDto author;
+    private CategoryDto category;
+    private Set<TagDto> tags;
+    private Integer readingTime;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private PostStatus postStatus;
+
+}
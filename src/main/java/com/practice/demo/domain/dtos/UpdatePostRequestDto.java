@@ -42,5 +42,9 @@ public class UpdatePostRequestDto {
 
     private PostStatus status;
 
+    //讀取文章時拿到的 version（PostDto.version 或 ETag），與目前的版本不同代表文章已被其他人修改
+    //沒有 If-Match header 時必填，由 PostController 檢查
+    private Long version;
+
 
 }
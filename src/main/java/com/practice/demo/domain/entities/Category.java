@@ -29,6 +29,10 @@ public class Category {
     @OneToMany(mappedBy = "category")
     private List<Post> posts = new ArrayList<>();
 
+    //已發布文章數（反正規化），只由 PublishedPostCounters 以 SQL 累加或校正，entity 的 INSERT / UPDATE 不會寫入這個欄位
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long publishedPostCount;
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -3,6 +3,7 @@ package com.practice.demo.domain.entities;
 import com.practice.demo.domain.PostStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -10,7 +11,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 
+//UPDATE 只包含有變更的欄位：只改狀態時不會重寫 content（TEXT）欄位
 @Entity
+@DynamicUpdate
 @Table(name = "posts")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,6 +34,10 @@ public class Post {
     @Column(nullable = false, columnDefinition = "TEXT")//columnDefinition = "TEXT"指定資料庫欄位為 TEXT 型別，適合儲存長字串（如貼文內容）。
     private String content;
 
+    //列表卡片使用的純文字摘要，在寫入時計算，讓列表查詢不需要讀取 content
+    @Column(length = 500)
+    private String excerpt;
+
     @Column(nullable = false)
     @Enumerated(EnumType.STRING)//將 Java enum 的名稱儲存為資料庫中的字串（例如 "PUBLISHED"），提高可讀性和穩定性。
     private PostStatus postStatus;
@@ -38,6 +45,12 @@ public class Post {
     @Column(nullable = false)
     private Integer readingTime;
 
+    //字數與內容雜湊由 PostTextAnalyzer 在寫入時計算；既有的文章在下次更新內容前為 null
+    private Integer wordCount;
+
+    @Column(length = 16)
+    private String contentHash;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="author_id", nullable = false)
     private User author;
@@ -61,6 +74,12 @@ public class Post {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    //樂觀鎖：UPDATE / DELETE 帶上 version 條件，同時有其他交易先修改時會失敗（ObjectOptimisticLockingFailureException），不需要鎖住資料列
+    //default 0 讓既有的文章在加上欄位時也有版本
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @PrePersist
     protected void onCreated(){
         LocalDateTime now = LocalDateTime.now();
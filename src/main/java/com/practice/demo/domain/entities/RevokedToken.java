@@ -0,0 +1,43 @@
+package com.practice.demo.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+//登出時撤銷的 access token，以 jti 為主鍵，過期後就可以刪除
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at"),
+        @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class RevokedToken implements Persistable<UUID> {
+
+    @Id
+    private UUID jti;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime revokedAt;
+
+    @Override
+    public UUID getId() {
+        return jti;
+    }
+
+    //jti 由 Token 決定，一律 persist 不先 SELECT；同一個 jti 撤銷兩次會違反主鍵
+    @Override
+    @Transient
+    public boolean isNew() {
+        return true;
+    }
+}
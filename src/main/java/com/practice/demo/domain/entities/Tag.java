@@ -3,7 +3,9 @@ package com.practice.demo.domain.entities;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.text.Normalizer;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -28,6 +30,23 @@ public class Tag {
     @ManyToMany(mappedBy = "tags")
     private Set<Post> posts = new HashSet<>();
 
+    //已發布文章數（反正規化），只由 PublishedPostCounters 以 SQL 累加或校正，entity 的 INSERT / UPDATE 不會寫入這個欄位
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long publishedPostCount;
+
+    //NFKC 把全形英數轉成半形，再合併空白、轉小寫，讓「Java」「 java 」「Ｊａｖａ」對應到同一個 tag
+    //name 的 unique 限制區分大小寫，寫入的名稱都要先經過這裡；既有的名稱由 TagNameNormalization 在啟動時轉換
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+
+        return Normalizer.normalize(name, Normalizer.Form.NFKC)
+                .strip()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
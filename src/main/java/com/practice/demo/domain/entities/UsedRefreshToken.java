@@ -0,0 +1,42 @@
+package com.practice.demo.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+//已使用（換發過或登出時撤銷）的 refresh token，以 jti 為主鍵，過期後就可以刪除
+@Entity
+@Table(name = "used_refresh_tokens", indexes = {
+        @Index(name = "idx_used_refresh_tokens_expires_at", columnList = "expires_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class UsedRefreshToken implements Persistable<UUID> {
+
+    @Id
+    private UUID jti;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime usedAt;
+
+    @Override
+    public UUID getId() {
+        return jti;
+    }
+
+    //一律 persist 不先 SELECT；同一個 jti 使用兩次會違反主鍵，用來保證 refresh token 只能使用一次
+    @Override
+    @Transient
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -10,8 +10,12 @@ import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
+//unique constraint 指定名稱，註冊失敗時依名稱判斷是 email 還是 name 重複
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email"),
+        @UniqueConstraint(name = User.NAME_CONSTRAINT, columnNames = "name")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -19,17 +23,21 @@ import java.util.UUID;
 @Builder
 public class User {
 
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
+    public static final String NAME_CONSTRAINT = "uk_users_name";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
     private String password;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String name;
 
     @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, orphanRemoval = true)
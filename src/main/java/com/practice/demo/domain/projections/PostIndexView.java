@@ -0,0 +1,7 @@
+package com.practice.demo.domain.projections;
+
+import java.util.UUID;
+
+//搜尋索引只需要的欄位：標題與內容用來分詞，標題也用來顯示結果
+public record PostIndexView(UUID id, String title, String content) {
+}
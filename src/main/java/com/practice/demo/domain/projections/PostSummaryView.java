@@ -0,0 +1,33 @@
+package com.practice.demo.domain.projections;
+
+import com.practice.demo.domain.PostStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+//文章列表用的 closed projection，Spring Data 只會 SELECT 這裡列出的欄位（不含 content）
+//作者與分類以 authorId、authorName 這類的扁平屬性取得：巢狀的 projection 會 SELECT 整個 users / categories 列（包括 password、email）
+public interface PostSummaryView {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getExcerpt();
+
+    Integer getReadingTime();
+
+    PostStatus getPostStatus();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    UUID getAuthorId();
+
+    String getAuthorName();
+
+    UUID getCategoryId();
+
+    String getCategoryName();
+}
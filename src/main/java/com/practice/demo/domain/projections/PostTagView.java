@@ -0,0 +1,7 @@
+package com.practice.demo.domain.projections;
+
+import java.util.UUID;
+
+//一次查出多篇文章的標籤時使用，每一列是一組 post_tags 關聯
+public record PostTagView(UUID postId, UUID tagId, String tagName) {
+}
@@ -0,0 +1,7 @@
+package com.practice.demo.domain.projections;
+
+import java.time.LocalDateTime;
+
+//條件式請求只需要的版本資訊：version 作為 ETag（If-None-Match / If-Match），updatedAt 作為 Last-Modified
+public record PostVersionView(LocalDateTime updatedAt, Long version) {
+}
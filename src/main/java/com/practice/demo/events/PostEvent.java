@@ -0,0 +1,34 @@
+package com.practice.demo.events;
+
+import com.practice.demo.domain.entities.Post;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 文章生命週期事件，在交易 commit 之後由 PostEventBus 發送。
+ * before 為異動前的狀態（新增時為 null），after 為異動後的狀態（刪除時為 null）。
+ * 同一篇文章短時間內的多個事件會合併成一個：保留最早的 before 與最新的 after。
+ */
+public record PostEvent(UUID postId, PostEventType type, PostState before, PostState after, Instant occurredAt) {
+
+    public static PostEvent created(Post post) {
+        return of(post.getId(), null, PostState.of(post));
+    }
+
+    public static PostEvent updated(PostState before, Post post) {
+        return of(post.getId(), before, PostState.of(post));
+    }
+
+    public static PostEvent deleted(Post post) {
+        return of(post.getId(), PostState.of(post), null);
+    }
+
+    public PostEvent coalesce(PostEvent later) {
+        return new PostEvent(postId, PostEventType.of(before, later.after), before, later.after, later.occurredAt);
+    }
+
+    private static PostEvent of(UUID postId, PostState before, PostState after) {
+        return new PostEvent(postId, PostEventType.of(before, after), before, after, Instant.now());
+    }
+}
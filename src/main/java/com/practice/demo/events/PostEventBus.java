@@ -0,0 +1,312 @@
+package com.practice.demo.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文章事件匯流排：寫入文章的交易 commit 之後才發送，衍生的工作不會拉長寫入請求的時間。
+ *
+ * 每個 PostEventListener 有自己的待處理佇列（以文章 id 為 key），消費者忙碌或在 linger 時間內
+ * 同一篇文章的多個事件會合併成一個；佇列最多 queue-capacity 篇文章，滿了之後發送端會等待（背壓），不會丟掉事件。
+ * 所有消費者共用 threads 個執行緒，每個消費者同一時間只會有一批在處理，一批最多 max-batch-size 個事件。
+ *
+ * mode=sync 時在 commit 之後直接在發送的執行緒上呼叫消費者（測試用）。
+ * deliverPending 讓消費者在需要時（例如重新計算衍生資料之前）立即收到自己佇列中的事件，不等 linger。
+ *
+ * 指標（tag consumer=消費者類別名稱）：post.events.queue.depth（待處理的文章數）、
+ * post.events.lag（從進入佇列到送達的時間）、post.events.batch.size、post.events.delivered、post.events.failed，
+ * 以及 name=postEvents 的 executor 指標。
+ */
+@Slf4j
+@Component
+public class PostEventBus implements DisposableBean {
+
+    public enum Mode {
+        ASYNC,
+        SYNC
+    }
+
+    private static final String NAME = "postEvents";
+
+    private final Mode mode;
+
+    private final int queueCapacity;
+
+    private final int maxBatchSize;
+
+    private final long lingerNanos;
+
+    private final ScheduledThreadPoolExecutor threadPool;
+
+    private final ScheduledExecutorService executor;
+
+    private final List<ConsumerQueue> consumers;
+
+    public PostEventBus(
+            List<PostEventListener> listeners,
+            MeterRegistry meterRegistry,
+            @Value("${blog.events.mode:async}") Mode mode,
+            @Value("${blog.events.threads:2}") int threads,
+            @Value("${blog.events.queue-capacity:10000}") int queueCapacity,
+            @Value("${blog.events.max-batch-size:500}") int maxBatchSize,
+            @Value("${blog.events.linger:50ms}") Duration linger) {
+
+        this.mode = mode;
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+
+        //每個消費者最多只有一個排程中的工作，佇列長度不會超過消費者數量
+        this.threadPool = new ScheduledThreadPoolExecutor(threads, new CustomizableThreadFactory("post-events-"));
+        //關閉時不等 linger，佇列中的事件由 destroy 直接送出
+        this.threadPool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, NAME);
+
+        this.consumers = listeners.stream()
+                .map(listener -> new ConsumerQueue(listener, meterRegistry))
+                .toList();
+    }
+
+    //在交易中呼叫時延後到 commit 之後才發送，交易回滾就不會發送
+    public void publish(PostEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+        } else {
+            dispatch(event);
+        }
+    }
+
+    private void dispatch(PostEvent event) {
+        for (ConsumerQueue consumer : consumers) {
+            if (mode == Mode.SYNC) {
+                consumer.deliver(List.of(new Pending(event, System.nanoTime())));
+            } else {
+                consumer.offer(event);
+            }
+        }
+    }
+
+    //在呼叫端的執行緒上送出這個消費者佇列中所有的事件；執行緒池正在送的一批會先完成，之後才回傳
+    public void deliverPending(PostEventListener listener) {
+        for (ConsumerQueue consumer : consumers) {
+            if (consumer.listener == listener) {
+                consumer.deliverPending();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        //還在 linger 的排程工作取消，佇列中的事件在這裡送完；已經在執行的一批會先完成
+        threadPool.shutdown();
+        for (ConsumerQueue consumer : consumers) {
+            consumer.deliverPending();
+        }
+        if (!threadPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Post event consumers did not finish within 10 seconds, pending events are dropped");
+        }
+    }
+
+    private static final class Pending {
+
+        private PostEvent event;
+
+        //合併後仍保留第一個事件進入佇列的時間，lag 才不會被低估
+        private final long enqueuedAt;
+
+        private Pending(PostEvent event, long enqueuedAt) {
+            this.event = event;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class ConsumerQueue {
+
+        private final PostEventListener listener;
+
+        private final String name;
+
+        private final Map<UUID, Pending> pending = new LinkedHashMap<>();
+
+        private boolean scheduled;
+
+        //取出一批到送達之間持有，執行緒池與 deliverPending 同一時間只有一個在送，順序與取出的順序相同
+        private final ReentrantLock delivering = new ReentrantLock();
+
+        private final Timer lag;
+
+        private final DistributionSummary batchSize;
+
+        private final Counter delivered;
+
+        private final Counter failed;
+
+        private ConsumerQueue(PostEventListener listener, MeterRegistry meterRegistry) {
+            this.listener = listener;
+            this.name = ClassUtils.getUserClass(listener).getSimpleName();
+
+            Gauge.builder("post.events.queue.depth", this, ConsumerQueue::depth)
+                    .description("Posts with events waiting for the consumer")
+                    .tag("consumer", name)
+                    .register(meterRegistry);
+            this.lag = Timer.builder("post.events.lag")
+                    .description("Time from enqueueing a post event to delivering it")
+                    .tag("consumer", name)
+                    .register(meterRegistry);
+            this.batchSize = DistributionSummary.builder("post.events.batch.size")
+                    .tag("consumer", name)
+                    .register(meterRegistry);
+            this.delivered = Counter.builder("post.events.delivered")
+                    .tag("consumer", name)
+                    .register(meterRegistry);
+            this.failed = Counter.builder("post.events.failed")
+                    .description("Post events in batches whose consumer threw an exception")
+                    .tag("consumer", name)
+                    .register(meterRegistry);
+        }
+
+        private synchronized int depth() {
+            return pending.size();
+        }
+
+        private synchronized void offer(PostEvent event) {
+            Pending existing = pending.get(event.postId());
+            if (existing != null) {
+                existing.event = existing.event.coalesce(event);
+                return;
+            }
+
+            boolean interrupted = false;
+            while (pending.size() >= queueCapacity && !threadPool.isShutdown()) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            //等待期間同一篇文章可能已經有新的事件進入佇列
+            existing = pending.get(event.postId());
+            if (existing != null) {
+                existing.event = existing.event.coalesce(event);
+            } else {
+                pending.put(event.postId(), new Pending(event, System.nanoTime()));
+            }
+
+            if (!scheduled) {
+                try {
+                    executor.schedule(this::drain, lingerNanos, TimeUnit.NANOSECONDS);
+                    scheduled = true;
+                } catch (RejectedExecutionException ex) {
+                    log.warn("Post event bus is shut down, event for post {} was not delivered to {}", event.postId(), name);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                delivering.lock();
+                try {
+                    List<Pending> batch = this.take();
+                    //deliverPending 已經送完時是空的
+                    if (!batch.isEmpty()) {
+                        deliver(batch);
+                    }
+                } finally {
+                    delivering.unlock();
+                }
+
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+            } while (threadPool.isShutdown());
+
+            //還有事件時重新排入執行緒池，不連續佔用執行緒，其他消費者也有機會執行
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                drain();
+            }
+        }
+
+        private void deliverPending() {
+            delivering.lock();
+            try {
+                for (List<Pending> batch = this.take(); !batch.isEmpty(); batch = this.take()) {
+                    deliver(batch);
+                }
+            } finally {
+                delivering.unlock();
+            }
+        }
+
+        //取出最多 max-batch-size 個事件，喚醒等待空間的發送端
+        private synchronized List<Pending> take() {
+            List<Pending> batch = new ArrayList<>(Math.min(maxBatchSize, pending.size()));
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            notifyAll();
+            return batch;
+        }
+
+        private void deliver(List<Pending> batch) {
+            List<PostEvent> events = new ArrayList<>(batch.size());
+            for (Pending item : batch) {
+                events.add(item.event);
+            }
+
+            try {
+                listener.onPostEvents(events);
+                delivered.increment(events.size());
+            } catch (RuntimeException ex) {
+                failed.increment(events.size());
+                log.error("Post event consumer {} failed on a batch of {} events", name, events.size(), ex);
+            }
+
+            long now = System.nanoTime();
+            for (Pending item : batch) {
+                lag.record(now - item.enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+            batchSize.record(events.size());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.practice.demo.events;
+
+import java.util.List;
+
+/**
+ * 文章事件的消費者（快取失效、計數、搜尋索引等衍生資料），實作成 Spring bean 就會自動註冊到 PostEventBus。
+ * 每個消費者有自己的佇列，同一時間只會有一批在處理；同一篇文章在一批中最多出現一次，且依發生順序送達。
+ * 丟出例外只會記錄錯誤與 post.events.failed 指標，這一批不會重送。
+ */
+public interface PostEventListener {
+
+    void onPostEvents(List<PostEvent> events);
+}
@@ -0,0 +1,24 @@
+package com.practice.demo.events;
+
+import com.practice.demo.domain.PostStatus;
+
+// 文章生命週期事件的種類，由異動前後的狀態決定（合併多個事件後也一樣）
+public enum PostEventType {
+    CREATED,
+    UPDATED,
+    PUBLISHED,
+    DELETED;
+
+    public static PostEventType of(PostState before, PostState after) {
+        if (after == null) {
+            return DELETED;
+        }
+        if (before == null) {
+            return CREATED;
+        }
+        if (before.status() != PostStatus.PUBLISHED && after.status() == PostStatus.PUBLISHED) {
+            return PUBLISHED;
+        }
+        return UPDATED;
+    }
+}
@@ -0,0 +1,18 @@
+package com.practice.demo.events;
+
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.entities.Post;
+import com.practice.demo.domain.entities.Tag;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// 事件中文章的快照：只有會影響衍生資料（文章數、索引等）的欄位，不包含內容
+public record PostState(PostStatus status, UUID categoryId, Set<UUID> tagIds) {
+
+    public static PostState of(Post post) {
+        Set<UUID> tagIds = post.getTags().stream().map(Tag::getId).collect(Collectors.toUnmodifiableSet());
+        return new PostState(post.getPostStatus(), post.getCategory().getId(), tagIds);
+    }
+}
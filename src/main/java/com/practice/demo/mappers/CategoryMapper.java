@@ -1,15 +1,11 @@
 package com.practice.demo.mappers;
 
-import com.practice.demo.domain.PostStatus;
 import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.dtos.CreateCategoryRequest;
 import com.practice.demo.domain.entities.Category;
-import com.practice.demo.domain.entities.Post;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
-import org.mapstruct.Named;
 import org.mapstruct.ReportingPolicy;
-import java.util.List;
 
 // 定義 MapStruct 映射介面，將 Category 轉為 CategoryDto
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
@@ -19,23 +15,9 @@ import java.util.List;
 public interface CategoryMapper {
 
     // 將 Category 轉為 CategoryDto
-    @Mapping(target = "postCount", source = "posts", qualifiedByName = "calculatePostCount")
-    // @Mapping: 指定映射規則
-    // target = "postCount": 目標是 CategoryDto 的 postCount 屬性
-    // source = "posts": 來源是 Category 的 posts 集合（List<Post>）
-    // qualifiedByName = "calculatePostCount": 使用名為 calculatePostCount 的方法計算 postCount
+    // postCount 由 CategoryRepository.findAllWithPostCount 讀取 publishedPostCount，這裡不讀取 posts 集合，避免載入所有文章
+    @Mapping(target = "postCount", ignore = true)
     CategoryDto toDto(Category category);
 
-    // 自訂方法，計算已發布貼文數量
-    @Named("calculatePostCount")
-    // @Named("calculatePostCount"): 標記此方法為 MapStruct 的自訂映射方法，供 @Mapping 引用
-    default long calculatePostCount(List<Post> posts) {
-        if (null == posts) {
-            return 0;
-        }
-        // 過濾狀態為 PUBLISHED 的貼文並計數
-        return posts.stream().filter(post -> PostStatus.PUBLISHED.equals(post.getPostStatus())).count();
-    }
-
     Category toEntity(CreateCategoryRequest createCategoryRequest);
 }
\ No newline at end of file
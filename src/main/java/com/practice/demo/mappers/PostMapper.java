@@ -1,16 +1,23 @@
 package com.practice.demo.mappers;
 
+import com.practice.demo.domain.dtos.AuthorDto;
+import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.dtos.CreatePostRequestDto;
 import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.PostSummaryDto;
+import com.practice.demo.domain.dtos.TagDto;
 import com.practice.demo.domain.dtos.UpdatePostRequestDto;
 import com.practice.demo.domain.entities.CreatePostRequest;
 import com.practice.demo.domain.entities.Post;
 import com.practice.demo.domain.entities.UpdatePostRequest;
+import com.practice.demo.domain.projections.PostSummaryView;
 
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
 
+import java.util.Set;
+
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
 public interface PostMapper {
 
@@ -22,6 +29,24 @@ public interface PostMapper {
     //此外，必須先建立好AuthorMapper, CategoryMapper, TagMapper，讓 MapStruct 知道如何做轉換
     PostDto toDto(Post post);
 
+    //新增文章時作者與分類是尚未載入的 proxy，改用快取的 DTO，避免 mapping 時查詢 users / categories
+    @Mapping(target = "id", source = "post.id")
+    @Mapping(target = "author", source = "author")
+    @Mapping(target = "category", source = "category")
+    PostDto toDto(Post post, AuthorDto author, CategoryDto category);
+
+    //匯出時 tags 由 PostRepository.findTagsByPostIds 每批一次查出後傳入
+    @Mapping(target = "tags", source = "tags")
+    PostDto toDto(Post post, Set<TagDto> tags);
+
+    //tags 由 PostRepository.findTagsByPostIds 另外查出後傳入
+    @Mapping(target = "tags", source = "tags")
+    @Mapping(target = "author.id", source = "view.authorId")
+    @Mapping(target = "author.name", source = "view.authorName")
+    @Mapping(target = "category.id", source = "view.categoryId")
+    @Mapping(target = "category.name", source = "view.categoryName")
+    PostSummaryDto toSummaryDto(PostSummaryView view, Set<TagDto> tags);
+
     CreatePostRequest toCreeatePostRequest(CreatePostRequestDto dto);
 
     UpdatePostRequest toUpdatePostRequest(UpdatePostRequestDto dto);
@@ -1,8 +1,11 @@
 package com.practice.demo.repositories;
 
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.entities.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,10 +15,19 @@ import java.util.UUID;
 public interface CategoryRepository extends JpaRepository<Category, UUID> {
 
 
-    //此SQL解決N+1 問題：如果不使用 FETCH，查詢所有 Category 後，訪問每個 c.getPosts() 會單獨觸發一次 SQL 查詢。
-    //如果有 N 個 Category，會產生 N+1 次查詢（1 次查 categories，N 次查每個人的 posts）。
-    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.posts")
-    List<Category> findAllWithPostCount();
+    //分類列表直接讀取反正規化的已發布文章數，不需要 JOIN posts
+    @Query("SELECT new com.practice.demo.domain.dtos.CategoryDto(c.id, c.name, c.publishedPostCount) FROM Category c")
+    List<CategoryDto> findAllWithPostCount();
+
+    //在資料庫用 GROUP BY 重新計算每個分類的文章數，直接投影成 CategoryDto，不需要把 posts 載入記憶體；只用於校正 publishedPostCount。
+    //狀態條件放在 LEFT JOIN 的 ON 裡，沒有符合文章的分類仍會回傳，數量為 0。
+    @Query("SELECT new com.practice.demo.domain.dtos.CategoryDto(c.id, c.name, COUNT(p.id)) " +
+            "FROM Category c LEFT JOIN c.posts p ON p.postStatus = :postStatus " +
+            "GROUP BY c.id, c.name")
+    List<CategoryDto> countPostsByCategory(@Param("postStatus") PostStatus postStatus);
 
     boolean existsByNameIgnoreCase(String name);
+
+    //產生 EXISTS 子查詢，找到第一篇文章就停止，不需要載入 posts 集合
+    boolean existsByIdAndPostsIsNotEmpty(UUID id);
 }
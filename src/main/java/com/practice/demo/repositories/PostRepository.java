@@ -1,25 +1,59 @@
 package com.practice.demo.repositories;
 
 import com.practice.demo.domain.PostStatus;
-import com.practice.demo.domain.entities.Category;
 import com.practice.demo.domain.entities.Post;
-import com.practice.demo.domain.entities.Tag;
-import com.practice.demo.domain.entities.User;
+import com.practice.demo.domain.projections.PostIndexView;
+import com.practice.demo.domain.projections.PostTagView;
+import com.practice.demo.domain.projections.PostVersionView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface PostRepository extends JpaRepository<Post, UUID> {
+//文章列表的篩選與 keyset 分頁透過 JpaSpecificationExecutor.findBy 搭配 PostSpecifications 組合成單一查詢
+public interface PostRepository extends JpaRepository<Post, UUID>, JpaSpecificationExecutor<Post>, PostRepositoryCustom {
 
-    List<Post> findAllByPostStatusAndCategoryAndTagsContaining(PostStatus PostStatus, Category category, Tag tag);
+    //文章詳情：author、category、tags 一次查出，mapping 成 PostDto 時不會再觸發 lazy loading
+    @EntityGraph(attributePaths = {"author", "category", "tags"})
+    Optional<Post> findWithDetailsById(UUID id);
 
-    List<Post> findAllByPostStatusAndCategory(PostStatus PostStatus, Category category);
+    //只查 updatedAt 與 version，條件式請求（ETag / Last-Modified）用來判斷文章是否有變更，不需要讀取 content
+    @Query("SELECT new com.practice.demo.domain.projections.PostVersionView(p.updatedAt, p.version) FROM Post p WHERE p.id = :id")
+    Optional<PostVersionView> findVersionById(@Param("id") UUID id);
 
-    List<Post> findAllByPostStatusAndTagsContaining(PostStatus PostStatus, Tag tag);
+    //一次查出一整頁文章的標籤，避免逐篇載入 Post.tags
+    @Query("SELECT new com.practice.demo.domain.projections.PostTagView(p.id, t.id, t.name) FROM Post p JOIN p.tags t WHERE p.id IN :postIds")
+    List<PostTagView> findTagsByPostIds(@Param("postIds") Collection<UUID> postIds);
 
-    List<Post> findAllByPostStatus(PostStatus PostStatus);
+    //批次匯入時一次找出已經存在的標題（title 有 unique 限制）
+    @Query("SELECT p.title FROM Post p WHERE p.title IN :titles")
+    Set<String> findExistingTitles(@Param("titles") Collection<String> titles);
 
-    List<Post> findAllByPostStatusAndAuthor(PostStatus PostStatus, User author);
-}
+    //建立搜尋索引：以資料庫游標逐批讀取，不會一次載入所有文章的內容；需要在交易中使用並關閉 Stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.practice.demo.domain.projections.PostIndexView(p.id, p.title, p.content) FROM Post p WHERE p.postStatus = :status")
+    Stream<PostIndexView> streamIndexViews(@Param("status") PostStatus status);
+
+    //從快照載入索引後，補上快照之後有更新的文章
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.practice.demo.domain.projections.PostIndexView(p.id, p.title, p.content) FROM Post p WHERE p.postStatus = :status AND p.updatedAt >= :since")
+    Stream<PostIndexView> streamIndexViewsUpdatedSince(@Param("status") PostStatus status, @Param("since") LocalDateTime since);
 
+    @Query("SELECT new com.practice.demo.domain.projections.PostIndexView(p.id, p.title, p.content) FROM Post p WHERE p.postStatus = :status AND p.id IN :ids")
+    List<PostIndexView> findIndexViewsByIds(@Param("status") PostStatus status, @Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT p.id FROM Post p WHERE p.postStatus = :status")
+    List<UUID> findIdsByPostStatus(@Param("status") PostStatus status);
+}
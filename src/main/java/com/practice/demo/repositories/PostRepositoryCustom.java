@@ -0,0 +1,30 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.PostSearchCursor;
+import com.practice.demo.domain.entities.Post;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+//Spring Data 的自訂片段，放 derived query / @Query 無法表達的查詢，實作在 PostRepositoryCustomImpl
+public interface PostRepositoryCustom {
+
+    //匯出用的串流查詢：依 updatedAt、id 排序，author 與 category 一起查出，資料庫游標每次只取 fetchSize 筆
+    //必須在交易中使用，並在用完後關閉 Stream
+    Stream<Post> streamForExport(Specification<Post> filter, int fetchSize);
+
+    //全文搜尋已發布的文章（標題權重高於內容），依 rank、id 由大到小排序的 keyset 分頁，after 為 null 時是第一頁
+    //PostgreSQL 使用 posts.search_vector（tsvector + GIN，見 PostSearchSchema），其他資料庫（H2 測試）以 LIKE 比對每個字詞
+    //回傳的 title 與 snippet 以 HIGHLIGHT_START / HIGHLIGHT_END 標記符合的字詞，尚未做 HTML escape
+    List<PostSearchHit> searchPublished(String query, PostSearchCursor.Position after, int limit);
+
+    //Unicode 私用區的字元，不會出現在一般文章內容中，escape 之後再換成 <mark>
+    String HIGHLIGHT_START = "\uE000";
+
+    String HIGHLIGHT_END = "\uE001";
+
+    record PostSearchHit(UUID id, float rank, String title, String snippet) {
+    }
+}
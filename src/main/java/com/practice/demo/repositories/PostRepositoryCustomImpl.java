@@ -0,0 +1,271 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.PostSearchCursor;
+import com.practice.demo.domain.entities.Post;
+import com.practice.demo.services.PostTextAnalyzer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.ByteBuffer;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class PostRepositoryCustomImpl implements PostRepositoryCustom {
+
+    //與 PostSearchSchema 建立 search_vector 時使用的設定相同；simple 不做詞幹還原，中英文混合的內容都能比對
+    private static final String TEXT_SEARCH_CONFIG = "simple";
+
+    //ts_headline 的選項：標題整個回傳，內容最多兩段、每段 10 到 25 個字
+    private static final String TITLE_HEADLINE_OPTIONS =
+            "HighlightAll=true, StartSel=\"" + HIGHLIGHT_START + "\", StopSel=\"" + HIGHLIGHT_END + "\"";
+
+    private static final String SNIPPET_HEADLINE_OPTIONS =
+            "MaxFragments=2, MinWords=10, MaxWords=25, FragmentDelimiter=\" ... \", "
+                    + "StartSel=\"" + HIGHLIGHT_START + "\", StopSel=\"" + HIGHLIGHT_END + "\"";
+
+    //H2 的相關度：每個字詞出現在標題加 1.0、出現在內容加 0.4，與 ts_rank_cd 預設的 A、B 權重相同
+    private static final String TITLE_WEIGHT = "1.0";
+
+    private static final String CONTENT_WEIGHT = "0.4";
+
+    private static final int MAX_LIKE_TERMS = 10;
+
+    private static final int SNIPPET_LENGTH = 200;
+
+    private static final int SNIPPET_LEADING_CONTEXT = 40;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Post> streamForExport(Specification<Post> filter, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Post> query = cb.createQuery(Post.class);
+        Root<Post> root = query.from(Post.class);
+
+        //ManyToOne 的 fetch join 不會讓結果列重複，可以安全地串流
+        root.fetch("author");
+        root.fetch("category");
+
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("updatedAt")), cb.asc(root.get("id")));
+
+        //read-only 讓 Hibernate 不保留 dirty checking 用的快照
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<PostSearchHit> searchPublished(String query, PostSearchCursor.Position after, int limit) {
+        return this.isPostgreSQL()
+                ? this.searchTextVector(query, after, limit)
+                : this.searchLike(query, after, limit);
+    }
+
+    //GIN 索引只用來找出符合的文章；ts_rank_cd 無法使用索引，每一頁（包括後面的頁）都會對所有符合的文章計算 rank，再以 top-N 排序取一頁
+    //keyset（rank, id）讓文章異動時換頁不會重複或漏掉，但不會減少計算 rank 的文章數，後面的頁與第一頁的成本相同
+    //ts_headline 需要讀取 content，成本較高，只對這一頁產生
+    //websearch_to_tsquery 接受使用者輸入的語法（"片語"、OR、-排除），不會因為特殊字元而拋出語法錯誤
+    @SuppressWarnings("unchecked")
+    private List<PostSearchHit> searchTextVector(String query, PostSearchCursor.Position after, int limit) {
+        String seek = after == null ? "" : " WHERE rank < :afterRank OR (rank = :afterRank AND id < :afterId)";
+        //regconfig 參數不能以字串綁定（varchar 沒有轉成 regconfig 的隱含轉換），直接寫在 SQL 中
+        String config = "'" + TEXT_SEARCH_CONFIG + "'";
+        String sql = "WITH q AS (SELECT websearch_to_tsquery(" + config + ", :query) AS query),"
+                + " hits AS ("
+                + "SELECT p.id, ts_rank_cd(p.search_vector, q.query) AS rank"
+                + " FROM posts p CROSS JOIN q"
+                + " WHERE p.post_status = 'PUBLISHED' AND p.search_vector @@ q.query),"
+                + " page AS (SELECT id, rank FROM hits" + seek + " ORDER BY rank DESC, id DESC LIMIT :limit)"
+                + " SELECT page.id, page.rank,"
+                + " ts_headline(" + config + ", p.title, q.query, :titleOptions),"
+                + " ts_headline(" + config + ", p.content, q.query, :snippetOptions)"
+                + " FROM page JOIN posts p ON p.id = page.id CROSS JOIN q"
+                + " ORDER BY page.rank DESC, page.id DESC";
+
+        Query nativeQuery = entityManager.createNativeQuery(sql)
+                .setParameter("query", query)
+                .setParameter("titleOptions", TITLE_HEADLINE_OPTIONS)
+                .setParameter("snippetOptions", SNIPPET_HEADLINE_OPTIONS)
+                .setParameter("limit", limit);
+        if (after != null) {
+            nativeQuery.setParameter("afterRank", after.rank());
+            nativeQuery.setParameter("afterId", after.id());
+        }
+        nativeQuery.unwrap(NativeQuery.class).addSynchronizedEntityClass(Post.class);
+
+        List<PostSearchHit> hits = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) nativeQuery.getResultList()) {
+            hits.add(new PostSearchHit(toUuid(row[0]), ((Number) row[1]).floatValue(), (String) row[2], (String) row[3]));
+        }
+        return hits;
+    }
+
+    //H2（測試）沒有 tsvector：每個以空白分隔的字詞都必須出現在標題或內容（不分大小寫），沒有索引，只適合少量資料
+    //片段與標記在 Java 產生
+    @SuppressWarnings("unchecked")
+    private List<PostSearchHit> searchLike(String query, PostSearchCursor.Position after, int limit) {
+        List<String> terms = Arrays.stream(WHITESPACE.split(query.strip().toLowerCase(Locale.ROOT)))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_LIKE_TERMS)
+                .toList();
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        StringJoiner rank = new StringJoiner(" + ");
+        StringJoiner matches = new StringJoiner(" AND ");
+        for (int i = 1; i <= terms.size(); i++) {
+            String title = "LOWER(p.title) LIKE ?" + i + " ESCAPE '\\'";
+            String content = "LOWER(p.content) LIKE ?" + i + " ESCAPE '\\'";
+            rank.add("CASE WHEN " + title + " THEN " + TITLE_WEIGHT + " ELSE 0 END");
+            rank.add("CASE WHEN " + content + " THEN " + CONTENT_WEIGHT + " ELSE 0 END");
+            matches.add("(" + title + " OR " + content + ")");
+        }
+
+        int next = terms.size() + 1;
+        String seek = after == null
+                ? ""
+                : " WHERE rank < ?" + next + " OR (rank = ?" + next + " AND id < ?" + (next + 1) + ")";
+        int limitParameter = after == null ? next : next + 2;
+        String sql = "SELECT id, rank, title, content FROM ("
+                + "SELECT p.id, p.title, p.content, CAST(" + rank + " AS REAL) AS rank FROM posts p"
+                + " WHERE p.post_status = 'PUBLISHED' AND " + matches
+                + ") hits" + seek + " ORDER BY rank DESC, id DESC LIMIT ?" + limitParameter;
+
+        Query nativeQuery = entityManager.createNativeQuery(sql);
+        for (int i = 0; i < terms.size(); i++) {
+            nativeQuery.setParameter(i + 1, "%" + escapeLike(terms.get(i)) + "%");
+        }
+        if (after != null) {
+            nativeQuery.setParameter(next, after.rank());
+            nativeQuery.setParameter(next + 1, after.id());
+        }
+        nativeQuery.setParameter(limitParameter, limit);
+        nativeQuery.unwrap(NativeQuery.class).addSynchronizedEntityClass(Post.class);
+
+        List<PostSearchHit> hits = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) nativeQuery.getResultList()) {
+            String content = row[3] instanceof Clob clob ? readClob(clob) : (String) row[3];
+            hits.add(new PostSearchHit(
+                    toUuid(row[0]),
+                    ((Number) row[1]).floatValue(),
+                    highlight((String) row[2], terms),
+                    snippet(content, terms)
+            ));
+        }
+        return hits;
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    //去掉 HTML 標籤後，從第一個符合的字詞前 SNIPPET_LEADING_CONTEXT 個字元開始取 SNIPPET_LENGTH 個字元
+    private static String snippet(String content, List<String> terms) {
+        String text = PostTextAnalyzer.plainText(content);
+
+        int first = text.length();
+        for (String term : terms) {
+            int index = indexOfIgnoreCase(text, term);
+            if (index >= 0) {
+                first = Math.min(first, index);
+            }
+        }
+
+        int start = first == text.length() ? 0 : Math.max(0, first - SNIPPET_LEADING_CONTEXT);
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        if (start > 0 && Character.isLowSurrogate(text.charAt(start))) {
+            start++;
+        }
+        if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+
+        return (start > 0 ? "... " : "") + highlight(text.substring(start, end), terms) + (end < text.length() ? " ..." : "");
+    }
+
+    private static String highlight(String text, List<String> terms) {
+        StringBuilder highlighted = new StringBuilder(text.length() + 16);
+        int i = 0;
+        while (i < text.length()) {
+            int matched = 0;
+            for (String term : terms) {
+                if (term.length() > matched && text.regionMatches(true, i, term, 0, term.length())) {
+                    matched = term.length();
+                }
+            }
+
+            if (matched > 0) {
+                highlighted.append(HIGHLIGHT_START).append(text, i, i + matched).append(HIGHLIGHT_END);
+                i += matched;
+            } else {
+                highlighted.append(text.charAt(i));
+                i++;
+            }
+        }
+        return highlighted.toString();
+    }
+
+    private static int indexOfIgnoreCase(String text, String term) {
+        for (int i = 0; i + term.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, term, 0, term.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //H2 的原生查詢把 uuid 欄位回傳成 16 bytes
+    private static UUID toUuid(Object value) {
+        if (value instanceof UUID id) {
+            return id;
+        }
+        if (value instanceof byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return UUID.fromString(value.toString());
+    }
+
+    private static String readClob(Clob clob) {
+        try {
+            return clob.getSubString(1, (int) clob.length());
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Failed to read post content", ex);
+        }
+    }
+
+    private boolean isPostgreSQL() {
+        return entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQLDialect;
+    }
+}
@@ -0,0 +1,69 @@
+package com.practice.demo.repositories;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * PostgreSQL 全文搜尋用的 posts.search_vector 欄位、trigger 與 GIN 索引，ddl-auto 無法建立，在啟動時建立（可重複執行）。
+ *
+ * search_vector 不對應到 Post entity，由 trigger 在 INSERT 與更新 title / content 時計算，標題的權重（A）高於內容（B）。
+ * Post 使用 @DynamicUpdate，只改狀態或分類的 UPDATE 不包含 title / content，不會重新計算。
+ * GIN 索引只包含已發布的文章（partial index），與搜尋的條件相同。
+ * 既有的文章在第一次啟動時補上 search_vector。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostSearchSchema implements InitializingBean {
+
+    private static final String VECTOR = "setweight(to_tsvector('simple', coalesce(%1$stitle, '')), 'A')"
+            + " || setweight(to_tsvector('simple', coalesce(%1$scontent, '')), 'B')";
+
+    private static final List<String> STATEMENTS = List.of(
+            "ALTER TABLE posts ADD COLUMN IF NOT EXISTS search_vector tsvector",
+            "CREATE OR REPLACE FUNCTION posts_search_vector_update() RETURNS trigger AS $$"
+                    + " BEGIN NEW.search_vector := " + VECTOR.formatted("NEW.") + "; RETURN NEW; END"
+                    + " $$ LANGUAGE plpgsql",
+            "DROP TRIGGER IF EXISTS posts_search_vector_update ON posts",
+            "CREATE TRIGGER posts_search_vector_update BEFORE INSERT OR UPDATE OF title, content ON posts"
+                    + " FOR EACH ROW EXECUTE FUNCTION posts_search_vector_update()",
+            "CREATE INDEX IF NOT EXISTS idx_posts_search_vector ON posts USING GIN (search_vector)"
+                    + " WHERE post_status = 'PUBLISHED'"
+    );
+
+    private static final String BACKFILL =
+            "UPDATE posts SET search_vector = " + VECTOR.formatted("") + " WHERE search_vector IS NULL";
+
+    //依賴 EntityManagerFactory：Hibernate 的 ddl-auto 先建立 posts 資料表
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!(entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect() instanceof PostgreSQLDialect)) {
+            log.info("Full-text search index requires PostgreSQL, post search falls back to LIKE matching");
+            return;
+        }
+
+        int backfilled = transactionTemplate.execute(status -> {
+            STATEMENTS.forEach(jdbcTemplate::execute);
+            return jdbcTemplate.update(BACKFILL);
+        });
+
+        if (backfilled > 0) {
+            log.info("Built search vectors for {} existing posts", backfilled);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.entities.Post;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+//文章列表的篩選條件，每個參數為 null 時就不加入該條件，可以任意組合成同一個查詢
+public final class PostSpecifications {
+
+    private PostSpecifications() {
+    }
+
+    public static Specification<Post> filter(PostStatus postStatus, UUID authorId, UUID categoryId, UUID tagId) {
+        return Specification.allOf(
+                hasStatus(postStatus),
+                hasAuthor(authorId),
+                inCategory(categoryId),
+                hasTag(tagId)
+        );
+    }
+
+    public static Specification<Post> hasStatus(PostStatus postStatus) {
+        return (root, query, cb) -> postStatus == null ? null : cb.equal(root.get("postStatus"), postStatus);
+    }
+
+    //直接比對外鍵欄位 author_id，不需要先載入 User
+    public static Specification<Post> hasAuthor(UUID authorId) {
+        return (root, query, cb) -> authorId == null ? null : cb.equal(root.get("author").get("id"), authorId);
+    }
+
+    public static Specification<Post> inCategory(UUID categoryId) {
+        return (root, query, cb) -> categoryId == null ? null : cb.equal(root.get("category").get("id"), categoryId);
+    }
+
+    //增量匯出：只取 since 之後（含）有更新的文章
+    public static Specification<Post> updatedSince(LocalDateTime since) {
+        return (root, query, cb) -> since == null ? null : cb.greaterThanOrEqualTo(root.get("updatedAt"), since);
+    }
+
+    //搜尋結果的一頁文章，已經由全文搜尋決定，只依 id 查出列表欄位
+    public static Specification<Post> idIn(Collection<UUID> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    //post_tags 的 (post_id, tag_id) 是唯一的，只比對一個 tag 時 join 不會產生重複的文章
+    public static Specification<Post> hasTag(UUID tagId) {
+        return (root, query, cb) -> tagId == null ? null : cb.equal(root.join("tags").get("id"), tagId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.practice.demo.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+//categories / tags 的 published_post_count 寫入，每種 UPDATE 用一次 JDBC batch 送出
+//呼叫端需依 id 排序（例如 TreeMap），多個實例同時更新相同的列時以相同順序鎖定，不會互相 deadlock
+@Repository
+@RequiredArgsConstructor
+public class PublishedPostCountRepository {
+
+    private static final String ADD_CATEGORY_COUNTS =
+            "UPDATE categories SET published_post_count = published_post_count + ? WHERE id = ?";
+
+    private static final String ADD_TAG_COUNTS =
+            "UPDATE tags SET published_post_count = published_post_count + ? WHERE id = ?";
+
+    private static final String SET_CATEGORY_COUNTS =
+            "UPDATE categories SET published_post_count = ? WHERE id = ?";
+
+    private static final String SET_TAG_COUNTS =
+            "UPDATE tags SET published_post_count = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //累加增減量；分類或標籤已被刪除時 UPDATE 不會影響任何列
+    public void addCategoryCounts(Map<UUID, Long> deltas) {
+        this.batchUpdate(ADD_CATEGORY_COUNTS, deltas);
+    }
+
+    public void addTagCounts(Map<UUID, Long> deltas) {
+        this.batchUpdate(ADD_TAG_COUNTS, deltas);
+    }
+
+    //校正時直接設定重新計算的數量
+    public void setCategoryCounts(Map<UUID, Long> counts) {
+        this.batchUpdate(SET_CATEGORY_COUNTS, counts);
+    }
+
+    public void setTagCounts(Map<UUID, Long> counts) {
+        this.batchUpdate(SET_TAG_COUNTS, counts);
+    }
+
+    private void batchUpdate(String sql, Map<UUID, Long> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(values.size());
+        values.forEach((id, value) -> batchArgs.add(new Object[]{value, id}));
+        jdbcTemplate.batchUpdate(sql, batchArgs);
+    }
+}
@@ -0,0 +1,101 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.entities.Tag;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 把既有的 tags.name 轉成 Tag.normalizeName 的形式（可重複執行，名稱都已正規化時不會寫入）。
+ *
+ * name 的 unique 限制區分大小寫，建立 tag 時只會正規化傳入的名稱；正規化之前建立的「Java」不會與「java」衝突，
+ * 會多出第二個 tag。這裡在啟動時改寫既有的名稱，正規化後相同的 tag 合併成一個：
+ * 優先保留名稱已經是正規化形式的 tag，其餘的文章關聯（post_tags）移到保留的 tag 後刪除。
+ * 合併後的 published_post_count 由 PublishedPostCounters 啟動時的校正重新計算。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TagNameNormalization implements InitializingBean {
+
+    //依賴 EntityManagerFactory：Hibernate 的 ddl-auto 先建立 tags 與 post_tags 資料表
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private record StoredTag(UUID id, String name) {
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.normalizeExistingNames();
+    }
+
+    /**
+     * @return 改名或合併（刪除）的 tag 數
+     */
+    public int normalizeExistingNames() {
+        int changed = transactionTemplate.execute(status -> {
+            List<StoredTag> tags = jdbcTemplate.query("SELECT id, name FROM tags",
+                    (rs, rowNum) -> new StoredTag(rs.getObject("id", UUID.class), rs.getString("name")));
+
+            Map<String, List<StoredTag>> byName = tags.stream()
+                    .collect(Collectors.groupingBy(tag -> Tag.normalizeName(tag.name())));
+
+            int count = 0;
+            for (Map.Entry<String, List<StoredTag>> entry : byName.entrySet()) {
+                //只有空白的名稱無法正規化，保持原樣
+                if (!entry.getKey().isEmpty()) {
+                    count += this.normalize(entry.getKey(), entry.getValue());
+                }
+            }
+            return count;
+        });
+
+        if (changed > 0) {
+            log.info("Normalized or merged {} tag names", changed);
+        }
+        return changed;
+    }
+
+    private int normalize(String name, List<StoredTag> tags) {
+        if (tags.size() == 1 && tags.get(0).name().equals(name)) {
+            return 0;
+        }
+
+        StoredTag kept = tags.stream()
+                .min(Comparator.comparing((StoredTag tag) -> !tag.name().equals(name))
+                        .thenComparing(StoredTag::name))
+                .orElseThrow();
+
+        for (StoredTag duplicate : tags) {
+            if (duplicate == kept) {
+                continue;
+            }
+            //同一篇文章可能同時有兩個 tag，只移動保留的 tag 還沒有的關聯，避免違反 post_tags 的主鍵
+            jdbcTemplate.update("INSERT INTO post_tags (post_id, tag_id) SELECT post_id, ? FROM post_tags"
+                            + " WHERE tag_id = ? AND post_id NOT IN (SELECT post_id FROM post_tags WHERE tag_id = ?)",
+                    kept.id(), duplicate.id(), kept.id());
+            jdbcTemplate.update("DELETE FROM post_tags WHERE tag_id = ?", duplicate.id());
+            jdbcTemplate.update("DELETE FROM tags WHERE id = ?", duplicate.id());
+        }
+
+        if (kept.name().equals(name)) {
+            return tags.size() - 1;
+        }
+        jdbcTemplate.update("UPDATE tags SET name = ? WHERE id = ?", name, kept.id());
+        return tags.size();
+    }
+}
@@ -1,19 +1,30 @@
 package com.practice.demo.repositories;
 
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.TagDto;
 import com.practice.demo.domain.entities.Tag;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 
 @Repository
-public interface TagRepository extends JpaRepository<Tag, UUID> {
+public interface TagRepository extends JpaRepository<Tag, UUID>, TagRepositoryCustom {
 
-    @Query("SELECT t FROM Tag t LEFT JOIN t.posts")
-    List<Tag> finaAllWithPostCount();
+    //標籤列表直接讀取反正規化的已發布文章數，不需要 JOIN post_tags 與 posts
+    @Query("SELECT new com.practice.demo.domain.dtos.TagDto(t.id, t.name, t.publishedPostCount) FROM Tag t")
+    List<TagDto> findAllWithPostCount();
 
-    List<Tag> findByNameIn(Set<String> names);
+    //post_tags 與 posts 在資料庫 JOIN 後以 GROUP BY 重新計數，直接投影成 TagDto；只用於校正 publishedPostCount。
+    //狀態條件放在 LEFT JOIN 的 ON 裡，沒有已發布文章的 tag 數量為 0。
+    @Query("SELECT new com.practice.demo.domain.dtos.TagDto(t.id, t.name, COUNT(p.id)) " +
+            "FROM Tag t LEFT JOIN t.posts p ON p.postStatus = :postStatus " +
+            "GROUP BY t.id, t.name")
+    List<TagDto> countPostsByTag(@Param("postStatus") PostStatus postStatus);
+
+    //產生 EXISTS 子查詢，找到第一筆 post_tags 就停止
+    boolean existsByIdAndPostsIsNotEmpty(UUID id);
 }
@@ -0,0 +1,16 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.entities.Tag;
+
+import java.util.Collection;
+import java.util.List;
+
+//Spring Data 的自訂片段，放 derived query / @Query 無法表達的寫入，實作在 TagRepositoryCustomImpl
+public interface TagRepositoryCustom {
+
+    //建立不存在的 tag 並回傳所有名稱對應的 tag，名稱需先正規化；同時有其他交易建立相同名稱時不會違反 unique 限制
+    TagUpsertResult upsertByNames(Collection<String> names);
+
+    record TagUpsertResult(List<Tag> tags, int created) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.entities.Tag;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class TagRepositoryCustomImpl implements TagRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TagUpsertResult upsertByNames(Collection<String> names) {
+        if (names.isEmpty()) {
+            return new TagUpsertResult(List.of(), 0);
+        }
+
+        //依名稱排序，同時建立重疊名稱的交易以相同順序鎖定，不會互相 deadlock
+        List<String> sortedNames = names.stream().distinct().sorted().toList();
+
+        if (!this.isPostgreSQL()) {
+            return this.mergeByNames(sortedNames);
+        }
+
+        //PostgreSQL：一句 INSERT 建立不存在的 tag，RETURNING 只回傳這次新增的列
+        String sql = "INSERT INTO tags (id, name) VALUES " + this.valuesList(sortedNames.size())
+                + " ON CONFLICT (name) DO NOTHING RETURNING id, name, published_post_count";
+        List<Tag> created = this.bindValues(entityManager.createNativeQuery(sql, Tag.class), sortedNames).getResultList();
+
+        //已存在（或其他交易剛建立）的 tag 再查一次；READ COMMITTED 下這是新的 snapshot，看得到剛提交的列
+        List<Tag> tags = new ArrayList<>(created);
+        if (created.size() < sortedNames.size()) {
+            Set<String> createdNames = created.stream().map(Tag::getName).collect(Collectors.toSet());
+            Set<String> existingNames = sortedNames.stream()
+                    .filter(name -> !createdNames.contains(name))
+                    .collect(Collectors.toSet());
+            tags.addAll(this.findByNames(existingNames));
+        }
+
+        return new TagUpsertResult(tags, created.size());
+    }
+
+    //H2（測試）不支援 INSERT ... ON CONFLICT / RETURNING，改用 MERGE 只插入不存在的名稱，再查出全部
+    //結果與 PostgreSQL 相同，但兩個交易同時建立同一個名稱時仍可能違反 unique 限制
+    private TagUpsertResult mergeByNames(List<String> sortedNames) {
+        String sql = "MERGE INTO tags t USING (VALUES " + this.valuesList(sortedNames.size()) + ") AS s(id, name)"
+                + " ON t.name = s.name"
+                + " WHEN NOT MATCHED THEN INSERT (id, name) VALUES (s.id, s.name)";
+        int created = this.bindValues(entityManager.createNativeQuery(sql), sortedNames).executeUpdate();
+
+        return new TagUpsertResult(this.findByNames(new HashSet<>(sortedNames)), created);
+    }
+
+    private List<Tag> findByNames(Set<String> names) {
+        return entityManager.createQuery("SELECT t FROM Tag t WHERE t.name IN :names", Tag.class)
+                .setParameter("names", names)
+                .getResultList();
+    }
+
+    private String valuesList(int size) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(?").append(2 * i + 1).append(", ?").append(2 * i + 2).append(")");
+        }
+        return values.toString();
+    }
+
+    //id 在 Java 產生（與 Tag 的 @GeneratedValue(UUID) 相同），不依賴資料庫的 UUID 函式
+    //只同步 Tag 的 query space：執行原生 SQL 前不需要 flush 其他 entity
+    private Query bindValues(Query query, List<String> names) {
+        query.unwrap(NativeQuery.class).addSynchronizedEntityClass(Tag.class);
+        for (int i = 0; i < names.size(); i++) {
+            query.setParameter(2 * i + 1, UUID.randomUUID());
+            query.setParameter(2 * i + 2, names.get(i));
+        }
+        return query;
+    }
+
+    private boolean isPostgreSQL() {
+        return entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQLDialect;
+    }
+}
@@ -0,0 +1,21 @@
+package com.practice.demo.repositories;
+
+import com.practice.demo.domain.entities.UsedRefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface UsedRefreshTokenRepository extends JpaRepository<UsedRefreshToken, UUID> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UsedRefreshToken t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
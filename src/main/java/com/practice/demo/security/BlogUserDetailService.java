@@ -4,11 +4,12 @@ import com.practice.demo.domain.entities.User;
 import com.practice.demo.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 @RequiredArgsConstructor
-public class BlogUserDetailService implements UserDetailsService {
+public class BlogUserDetailService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -22,4 +23,16 @@ public class BlogUserDetailService implements UserDetailsService {
 
         return new BlogUserDetails(user);
     }
+
+    //登入成功後，既有雜湊的演算法或成本與目前設定不同時，由 DaoAuthenticationProvider 傳入用新設定產生的雜湊
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePasswordByEmail(user.getUsername(), newPassword);
+
+        if (user instanceof BlogUserDetails blogUserDetails) {
+            return blogUserDetails.withPassword(newPassword);
+        }
+
+        return this.loadUserByUsername(user.getUsername());
+    }
 }
@@ -2,7 +2,6 @@ package com.practice.demo.security;
 
 import com.practice.demo.domain.entities.User;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,26 +10,42 @@ import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
-@RequiredArgsConstructor
+//只保存驗證需要的欄位，不持有 User entity，所以也可以直接由 JWT claims 建立，不需要查詢資料庫
 @Getter
 public class BlogUserDetails implements UserDetails {
 
-    private final User user;
+    public static final String ROLE_USER = "ROLE_USER";
 
+    private final UUID id;
 
-    @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    //Spring Security 的 username 就是 email
+    private final String username;
+
+    private final String name;
+
+    //由 JWT 建立時沒有密碼
+    private final String password;
+
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    public BlogUserDetails(User user) {
+        this(user.getId(), user.getEmail(), user.getName(), user.getPassword(), List.of(new SimpleGrantedAuthority(ROLE_USER)));
     }
 
-    @Override
-    public String getPassword() {
-        return user.getPassword();
+    public BlogUserDetails(UUID id, String username, String name, Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, name, null, authorities);
     }
 
-    @Override
-    public String getUsername() {
-        return user.getEmail();
+    private BlogUserDetails(UUID id, String username, String name, String password, Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.name = name;
+        this.password = password;
+        this.authorities = authorities;
+    }
+
+    public BlogUserDetails withPassword(String password) {
+        return new BlogUserDetails(id, username, name, password, authorities);
     }
 
     @Override
@@ -52,8 +67,4 @@ public class BlogUserDetails implements UserDetails {
     public boolean isEnabled() {
         return true;
     }
-
-    public UUID getId(){
-        return user.getId();
-    }
 }
@@ -34,7 +34,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             // 如果 Token 存在，進行驗證
             if (token != null) {
-                // 用 AuthenticationService 驗證 Token，取得使用者資訊
+                // 用 AuthenticationService 驗證 Token，由 Token 內的 claims 取得使用者資訊（不查詢資料庫）
+                // 已撤銷（登出）的 Token 與 refresh token 會在這裡被拒絕，撤銷清單只查記憶體
                 UserDetails userDetails = authenticationService.validateToken(token);
 
                 // 創建 Spring Security 的認證物件
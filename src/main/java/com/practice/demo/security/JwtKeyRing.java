@@ -0,0 +1,108 @@
+package com.practice.demo.security;
+
+import com.practice.demo.Config.JwtProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JWT 的簽章金鑰組，啟動時就把所有金鑰建好，之後簽發與驗證都不再重新產生 Key 或 JwtParser。
+ *
+ * JwtParser 是不可變且執行緒安全的，所以整個應用共用同一個 parser，
+ * 由 kid header 從金鑰表找出對應的驗證金鑰。
+ */
+@Component
+public class JwtKeyRing {
+
+    //jwt.secret 的 key id，沒有 kid header 的 Token 也視為這把金鑰簽的
+    public static final String DEFAULT_KEY_ID = "default";
+
+    private final Map<String, SecretKey> verificationKeys = new HashMap<>();
+
+    //依 activeFrom 由新到舊排序，第一把已生效的金鑰就是目前的簽章金鑰
+    private final List<SigningKey> signingSchedule = new ArrayList<>();
+
+    private final JwtParser parser;
+
+    public JwtKeyRing(JwtProperties properties) {
+        if (properties.secret() != null) {
+            this.addKey(DEFAULT_KEY_ID, properties.secret(), Instant.EPOCH);
+        }
+        for (JwtProperties.Key key : properties.keys()) {
+            this.addKey(key.id(), key.secret(), key.activeFrom() == null ? Instant.EPOCH : key.activeFrom());
+        }
+        if (signingSchedule.isEmpty()) {
+            throw new IllegalStateException("No JWT signing key configured, set jwt.secret or jwt.keys");
+        }
+        signingSchedule.sort(Comparator.comparing(SigningKey::activeFrom).reversed());
+
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveVerificationKey(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 目前用來簽發 Token 的金鑰
+     */
+    public SigningKey currentSigningKey() {
+        Instant now = Instant.now();
+        for (SigningKey key : signingSchedule) {
+            if (!key.activeFrom().isAfter(now)) {
+                return key;
+            }
+        }
+
+        //所有金鑰都還沒生效時，使用最早生效的那一把
+        return signingSchedule.getLast();
+    }
+
+    /**
+     * 驗證簽章與有效期限並取出 claims，金鑰不存在、簽章錯誤或過期都會拋出 JwtException
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private Key resolveVerificationKey(String keyId) {
+        SecretKey key = verificationKeys.get(keyId == null ? DEFAULT_KEY_ID : keyId);
+        if (key == null) {
+            throw new JwtException("Unknown JWT key id: " + keyId);
+        }
+
+        return key;
+    }
+
+    private void addKey(String id, String secret, Instant activeFrom) {
+        if (id == null || secret == null) {
+            throw new IllegalStateException("JWT key id and secret are required");
+        }
+        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        if (verificationKeys.putIfAbsent(id, key) != null) {
+            throw new IllegalStateException("Duplicate JWT key id: " + id);
+        }
+        signingSchedule.add(new SigningKey(id, key, activeFrom));
+    }
+
+    public record SigningKey(String id, SecretKey key, Instant activeFrom) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.practice.demo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 登入與註冊的 token bucket 限流，分別以 IP 與 email 計算，兩者都要有 token 才放行。
+ *
+ * bucket 存在分段（striped）的 LRU map 中：依 key 的 hash 分到固定數量的段，每段各自加鎖，
+ * 不同 key 的請求大多不會互相等待；每段有筆數上限，最久沒用到的 bucket 會被移除，記憶體用量有上限。
+ */
+@Component
+public class LoginThrottle {
+
+    private static final int STRIPES = 32;
+
+    private final TokenBuckets ipBuckets;
+
+    private final TokenBuckets emailBuckets;
+
+    public LoginThrottle(
+            @Value("${blog.auth.throttle.ip.capacity:20}") int ipCapacity,
+            @Value("${blog.auth.throttle.ip.refill-per-minute:20}") int ipRefillPerMinute,
+            @Value("${blog.auth.throttle.email.capacity:5}") int emailCapacity,
+            @Value("${blog.auth.throttle.email.refill-per-minute:5}") int emailRefillPerMinute,
+            @Value("${blog.auth.throttle.max-keys:100000}") int maxKeys) {
+
+        this.ipBuckets = new TokenBuckets(ipCapacity, ipRefillPerMinute, maxKeys);
+        this.emailBuckets = new TokenBuckets(emailCapacity, emailRefillPerMinute, maxKeys);
+    }
+
+    /**
+     * 各扣一個 token，任何一邊不足就丟出 LoginThrottledException
+     */
+    public void acquire(String ip, String email) {
+        long retryAfter = ipBuckets.tryAcquire(ip);
+        if (retryAfter > 0) {
+            throw new LoginThrottledException("Too many attempts from this address, please retry later", retryAfter);
+        }
+
+        if (email != null) {
+            retryAfter = emailBuckets.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+            if (retryAfter > 0) {
+                throw new LoginThrottledException("Too many attempts for this account, please retry later", retryAfter);
+            }
+        }
+    }
+
+    private static final class TokenBuckets {
+
+        private final double capacity;
+
+        private final double tokensPerNano;
+
+        private final Map<String, Bucket>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        TokenBuckets(int capacity, int refillPerMinute, int maxKeys) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / 60_000_000_000.0;
+            this.stripes = new Map[STRIPES];
+
+            int maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                        return size() > maxKeysPerStripe;
+                    }
+                };
+            }
+        }
+
+        //成功時回傳 0，否則回傳需要等待的秒數
+        long tryAcquire(String key) {
+            Map<String, Bucket> stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+            long now = System.nanoTime();
+
+            synchronized (stripe) {
+                Bucket bucket = stripe.get(key);
+                if (bucket == null) {
+                    bucket = new Bucket(capacity, now);
+                    stripe.put(key, bucket);
+                }
+
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * tokensPerNano);
+                bucket.updatedAt = now;
+
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+
+                return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano / 1_000_000_000.0));
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+
+        private long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
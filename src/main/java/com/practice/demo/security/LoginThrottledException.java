@@ -0,0 +1,16 @@
+package com.practice.demo.security;
+
+import lombok.Getter;
+
+//同一個 IP 或 email 的登入/註冊次數超過限制，對應 429 Too Many Requests
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    //多久之後可以再試（秒），放在 Retry-After header
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,76 @@
+package com.practice.demo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 專門執行密碼雜湊與比對（BCrypt 等）的執行緒池，執行緒數預設等於 CPU 核心數，
+ * 讓大量登入只會佔用這些執行緒，不會佔滿 Tomcat 的請求執行緒而拖慢其他 API。
+ *
+ * 佇列滿了直接拒絕（回傳 503），不在後面無限排隊。
+ * 指標透過 Micrometer 的 ExecutorServiceMetrics 註冊，name=passwordHashing：
+ * executor.queued（佇列長度）、executor.active、executor（每次雜湊的耗時）、executor.idle（排隊等待時間），
+ * 另外 auth.hashing.rejected 記錄被拒絕的次數。
+ */
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+
+    private static final String NAME = "passwordHashing";
+
+    private final ThreadPoolExecutor threadPool;
+
+    private final ExecutorService executor;
+
+    private final Counter rejected;
+
+    public PasswordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${blog.auth.hashing.threads:0}") int threads,
+            @Value("${blog.auth.hashing.queue-capacity:100}") int queueCapacity) {
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.threadPool = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, NAME);
+        this.rejected = Counter.builder("auth.hashing.rejected")
+                .description("Password hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在雜湊執行緒池中執行，佇列已滿時丟出 PasswordHashingRejectedException
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many authentication requests in progress, please retry later");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        threadPool.shutdown();
+    }
+}
@@ -0,0 +1,9 @@
+package com.practice.demo.security;
+
+//密碼雜湊的執行緒池已滿，對應 503 Service Unavailable
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,40 @@
+package com.practice.demo.security;
+
+import com.practice.demo.domain.entities.UsedRefreshToken;
+import com.practice.demo.repositories.UsedRefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 已使用的 refresh token，只記錄在資料表 used_refresh_tokens，不放進記憶體。
+ *
+ * 每次換發都會新增一筆，保留到 refresh token 過期（14 天），數量隨使用者數 × 換發次數成長；
+ * 只有換發與登出時需要檢查，一次 INSERT 就同時完成檢查與標記，不需要像 access token 一樣在每個請求查記憶體。
+ */
+@Component
+@RequiredArgsConstructor
+public class RefreshTokenStore {
+
+    private final UsedRefreshTokenRepository usedRefreshTokenRepository;
+
+    /**
+     * 標記為已使用，同一個 jti 已經使用過時會丟出 DataIntegrityViolationException
+     */
+    public void markUsed(UUID jti, LocalDateTime expiresAt) {
+        usedRefreshTokenRepository.save(UsedRefreshToken.builder()
+                .jti(jti)
+                .expiresAt(expiresAt)
+                .usedAt(LocalDateTime.now())
+                .build());
+    }
+
+    //過期的 refresh token 本來就無法通過驗證，不需要再記錄
+    @Scheduled(fixedDelayString = "${blog.auth.refresh-token-cleanup-interval:1h}")
+    public void deleteExpired() {
+        usedRefreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,78 @@
+package com.practice.demo.security;
+
+import com.practice.demo.domain.entities.RevokedToken;
+import com.practice.demo.repositories.RevokedTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已撤銷 access token 的 jti 清單，每個請求的檢查只查記憶體，不會查資料庫。
+ *
+ * 資料表 revoked_tokens 是唯一的來源：啟動時載入尚未過期的紀錄，之後定期只讀取新增的紀錄（其他節點撤銷的 Token），
+ * 同時移除已過期的紀錄。只有登出時撤銷的 access token 會加入，有效期限最多 access-token-ttl，所以清單只會保留少量的 jti；
+ * 已使用的 refresh token 每次換發都會產生，記錄在資料表（見 RefreshTokenStore），不放在這裡。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationList implements InitializingBean {
+
+    //同步時往前多讀一段時間，容許各節點時鐘誤差與交易 commit 的延遲
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    //jti -> Token 的到期時間
+    private final Map<UUID, LocalDateTime> revoked = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime syncedUntil;
+
+    @Override
+    public void afterPropertiesSet() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.findByExpiresAtAfter(now).forEach(this::add);
+        syncedUntil = now;
+
+        log.info("Loaded {} revoked tokens", revoked.size());
+    }
+
+    public boolean isRevoked(UUID jti) {
+        return revoked.containsKey(jti);
+    }
+
+    /**
+     * 寫入資料表後加入記憶體，同一個 jti 已經撤銷過時會丟出 DataIntegrityViolationException
+     */
+    public void revoke(UUID jti, LocalDateTime expiresAt) {
+        revokedTokenRepository.save(RevokedToken.builder()
+                .jti(jti)
+                .expiresAt(expiresAt)
+                .revokedAt(LocalDateTime.now())
+                .build());
+        revoked.put(jti, expiresAt);
+    }
+
+    @Scheduled(fixedDelayString = "${blog.auth.revocation.sync-interval:30s}")
+    public void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.findByRevokedAtAfter(syncedUntil.minus(SYNC_OVERLAP)).forEach(this::add);
+        syncedUntil = now;
+
+        //過期的 Token 本來就無法通過驗證，不需要再記錄
+        revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        revokedTokenRepository.deleteExpired(now);
+    }
+
+    private void add(RevokedToken token) {
+        revoked.put(token.getJti(), token.getExpiresAt());
+    }
+}
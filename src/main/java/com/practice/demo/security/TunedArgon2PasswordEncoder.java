@@ -0,0 +1,26 @@
+package com.practice.demo.security;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+/**
+ * Argon2id 雜湊（需要 BouncyCastle），參數會寫在雜湊字串中（$argon2id$v=19$m=...,t=...,p=...$），
+ * 只要與目前設定不同就重新雜湊，調高或調低成本都會在下次登入時生效。
+ */
+public class TunedArgon2PasswordEncoder extends Argon2PasswordEncoder {
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int HASH_LENGTH = 32;
+
+    private final String parameters;
+
+    public TunedArgon2PasswordEncoder(int memoryKib, int iterations, int parallelism) {
+        super(SALT_LENGTH, HASH_LENGTH, parallelism, memoryKib, iterations);
+        this.parameters = "$m=" + memoryKib + ",t=" + iterations + ",p=" + parallelism + "$";
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encodedPassword != null && !encodedPassword.contains(parameters);
+    }
+}
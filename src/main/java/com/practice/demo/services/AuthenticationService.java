@@ -2,11 +2,27 @@ package com.practice.demo.services;
 
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AuthenticationService {
-    UserDetails authenticate(String email, String password);
+    //密碼比對在專用的執行緒池中執行，完成後回傳登入者
+    CompletableFuture<UserDetails> authenticate(String email, String password);
+    //產生 access token
     String generateToken(UserDetails userDetails);
 
+    //登入後發給前端的 access token 與 refresh token
+    AuthTokens issueTokens(UserDetails userDetails);
+
+    //用 refresh token 換發新的 Token，舊的 refresh token 會被撤銷
+    AuthTokens refresh(String refreshToken);
+
+    //撤銷 access token 與 refresh token，兩者都可以是 null
+    void logout(String accessToken, String refreshToken);
+
     UserDetails validateToken(String token);
 
-    UserDetails register(String email, String password, String name);
+    CompletableFuture<UserDetails> register(String email, String password, String name);
+
+    record AuthTokens(UserDetails user, String accessToken, String refreshToken, long expiresIn) {
+    }
 }
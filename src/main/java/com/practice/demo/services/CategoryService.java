@@ -7,6 +7,7 @@ import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface CategoryService {
@@ -17,5 +18,10 @@ public interface CategoryService {
 
     void deleteCategory(UUID id);
 
-    Category getCategoryById(UUID id);
+    CategoryDto getCategoryById(UUID id);
+
+    //找不到的 id 不會拋出例外，由呼叫端逐筆判斷（批次匯入）
+    List<Category> findCategoriesByIds(Set<UUID> ids);
+
+    boolean existsById(UUID id);
 }
@@ -0,0 +1,992 @@
+package com.practice.demo.services;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 文章的記憶體內反向索引：字詞 → posting list，以 BM25 排序，查詢的所有字詞都必須出現（AND），
+ * 最後一個字詞可以是前綴（邊輸入邊搜尋）。分詞見 PostSearchTokenizer。
+ *
+ * 前綴：每個字詞的前 1 到 MAX_PREFIX_LENGTH 個字另外索引成前綴字詞（edge n-gram，frequency 為符合的字詞的總和），
+ * 短的前綴（例如 sp）符合上千個字詞，查詢時展開成大量 posting list 的聯集太慢，改成只查一個 posting list；
+ * 代價是 posting list 約多出一倍多。更長的前綴符合的字詞很少，查詢時展開（最多 MAX_PREFIX_TERMS 個）。
+ *
+ * 每篇文章有一個遞增的 doc id，posting list 依 doc id 遞增排列，以 delta + varint 壓縮（frequency 為 1 時不另外儲存），
+ * 每 BLOCK_SIZE 筆為一個區塊，記錄區塊最後的 doc id、位置，以及區塊內最大的 frequency 與最短的文章長度：
+ * AND 查詢可以直接跳到需要的區塊，不需要解碼整個 list；前 limit 筆已經找到之後，
+ * 分數上限（block-max）不可能超過目前第 limit 名的區塊整個略過，常見的字詞與前綴也不需要逐篇計分。
+ * 更新文章時舊的 doc id 標記為刪除、新內容取得新的 doc id 附加在 list 尾端，list 不需要重新排序；
+ * 刪除的 doc 超過四分之一時重新編號並重建所有 posting list（compact）。
+ *
+ * 讀寫鎖：查詢可以同時進行，寫入（一次一篇）與 compact 時查詢需要等待。
+ * 快照（writeTo / readFrom）用來在重新啟動時載入，不需要從資料庫重建。
+ */
+public final class InvertedIndex {
+
+    //BM25 參數（Lucene 的預設值）
+    public static final float K1 = 1.2f;
+    public static final float B = 0.75f;
+
+    //標題中的字詞出現一次算 TITLE_WEIGHT 次，文章長度也以加權後的字詞數計算（BM25F 的簡化）
+    public static final int TITLE_WEIGHT = 3;
+
+    public static final int MAX_PREFIX_LENGTH = 4;
+
+    //超過 MAX_PREFIX_LENGTH 的前綴最多展開成文章數最多的 MAX_PREFIX_TERMS 個字詞
+    public static final int MAX_PREFIX_TERMS = 32;
+
+    static final int BLOCK_SIZE = 64;
+
+    //至少這麼多篇刪除的文章才 compact，避免少量文章時頻繁重建
+    private static final int MIN_DELETED_FOR_COMPACTION = 1024;
+
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final int SNAPSHOT_MAGIC = 0x50534958;
+
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Integer> docIds = new HashMap<>();
+
+    //以 doc id 為索引；刪除的文章 postIds 為 null
+    private UUID[] postIds = new UUID[16];
+
+    private String[] titles = new String[16];
+
+    private int[] lengths = new int[16];
+
+    private int maxDoc;
+
+    private int deletedDocs;
+
+    //未刪除的文章的長度總和，計算平均長度用
+    private long totalLength;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+
+    //同樣的 posting list 依字詞排序，展開前綴用 subMap
+    private final TreeMap<String, Postings> sortedTerms = new TreeMap<>();
+
+    //前綴字詞 → posting list
+    private final Map<String, Postings> prefixes = new HashMap<>();
+
+    public record Hit(UUID postId, String title, float score) {
+    }
+
+    public record Snapshot(InvertedIndex index, LocalDateTime watermark) {
+    }
+
+    //新增或取代一篇文章，分詞在取得鎖之前完成
+    public void put(UUID postId, String title, String content) {
+        Map<String, int[]> frequencies = new HashMap<>();
+        int length = PostSearchTokenizer.tokenize(title, false, term -> frequencies.computeIfAbsent(term, key -> new int[1])[0] += TITLE_WEIGHT) * TITLE_WEIGHT
+                + PostSearchTokenizer.tokenize(content, true, term -> frequencies.computeIfAbsent(term, key -> new int[1])[0]++);
+
+        Map<String, int[]> prefixFrequencies = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+            String term = entry.getKey();
+            int prefixLength = Math.min(term.codePointCount(0, term.length()), MAX_PREFIX_LENGTH);
+            for (int i = 1, end = 0; i <= prefixLength; i++) {
+                end = term.offsetByCodePoints(end, 1);
+                prefixFrequencies.computeIfAbsent(term.substring(0, end), key -> new int[1])[0] += entry.getValue()[0];
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.delete(postId);
+
+            int doc = this.addDoc(postId, title, length);
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                Postings postings = terms.get(entry.getKey());
+                if (postings == null) {
+                    postings = new Postings();
+                    terms.put(entry.getKey(), postings);
+                    sortedTerms.put(entry.getKey(), postings);
+                }
+                postings.add(doc, entry.getValue()[0], length);
+            }
+            for (Map.Entry<String, int[]> entry : prefixFrequencies.entrySet()) {
+                prefixes.computeIfAbsent(entry.getKey(), key -> new Postings()).add(doc, entry.getValue()[0], length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID postId) {
+        lock.writeLock().lock();
+        try {
+            this.delete(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //posting list（包含前綴）壓縮後的總大小，不含區塊的資料
+    public long postingsBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings postings : terms.values()) {
+                bytes += postings.length;
+            }
+            for (Postings postings : prefixes.values()) {
+                bytes += postings.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<UUID> postIds() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(docIds.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Hit> search(String query, int limit) {
+        PostSearchTokenizer.Query parsed = PostSearchTokenizer.parseQuery(query);
+        if (parsed.terms().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        //重複的字詞只算一次；前綴以外的字詞若與前綴相同也不需要重複
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(parsed.terms()));
+        String prefix = null;
+        if (parsed.lastIsPrefix()) {
+            prefix = parsed.terms().getLast();
+            queryTerms.remove(prefix);
+        }
+
+        lock.readLock().lock();
+        try {
+            int liveDocs = docIds.size();
+            if (liveDocs == 0) {
+                return List.of();
+            }
+            float averageLength = Math.max(1f, (float) totalLength / liveDocs);
+
+            List<Clause> clauses = new ArrayList<>(queryTerms.size() + 1);
+            for (String term : queryTerms) {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    return List.of();
+                }
+                clauses.add(new TermClause(postings, liveDocs, averageLength));
+            }
+            if (prefix != null && prefix.codePointCount(0, prefix.length()) <= MAX_PREFIX_LENGTH) {
+                Postings postings = prefixes.get(prefix);
+                if (postings == null) {
+                    return List.of();
+                }
+                clauses.add(new TermClause(postings, liveDocs, averageLength));
+            } else if (prefix != null) {
+                List<Postings> expansions = this.expand(prefix);
+                if (expansions.isEmpty()) {
+                    return List.of();
+                }
+                List<TermClause> prefixClauses = new ArrayList<>(expansions.size());
+                for (Postings postings : expansions) {
+                    prefixClauses.add(new TermClause(postings, liveDocs, averageLength));
+                }
+                clauses.add(prefixClauses.size() == 1 ? prefixClauses.getFirst() : new PrefixClause(prefixClauses));
+            }
+
+            return this.collect(clauses, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //以文章數最少的字詞為主，其他字詞跳到相同的 doc id，全部都有才計分
+    //已經有 limit 筆之後，計算 [doc, upTo]（所有字詞目前的區塊都涵蓋的範圍）的分數上限，不超過第 limit 名就跳到 upTo 之後
+    private List<Hit> collect(List<Clause> clauses, int limit) {
+        clauses.sort(Comparator.comparingLong(Clause::cost));
+        Clause lead = clauses.getFirst();
+
+        //分數最低的在頂端；只有分數更高才取代，同分時保留 doc id 較小的，所以頂端是同分中 doc id 較大的
+        PriorityQueue<ScoredDoc> top = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(ScoredDoc::score).thenComparing(ScoredDoc::doc, Comparator.reverseOrder()));
+
+        int upTo = -1;
+        float maxScore = 0;
+
+        //其他字詞在整個 list 中的分數上限，加上第一個字詞的實際分數仍不夠高時，不需要移動其他字詞
+        float othersMaxScore = 0;
+        for (int i = 1; i < clauses.size(); i++) {
+            othersMaxScore += clauses.get(i).globalMaxScore();
+        }
+        othersMaxScore = Math.nextUp(othersMaxScore);
+
+        int doc = lead.nextDoc();
+        candidates:
+        while (doc != NO_MORE_DOCS) {
+            if (top.size() == limit) {
+                if (doc > upTo) {
+                    upTo = NO_MORE_DOCS;
+                    maxScore = 0;
+                    for (Clause clause : clauses) {
+                        upTo = Math.min(upTo, clause.advanceShallow(doc));
+                        maxScore += clause.maxScore();
+                    }
+                    //上限與實際分數的計算順序不同，多留一個 ulp 避免捨入誤差略過了同分的文章
+                    maxScore = Math.nextUp(maxScore);
+                }
+                if (maxScore <= top.peek().score()) {
+                    doc = upTo == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(upTo + 1);
+                    continue;
+                }
+                if (clauses.size() > 1 && lead.score() + othersMaxScore <= top.peek().score()) {
+                    doc = lead.nextDoc();
+                    continue;
+                }
+            }
+
+            for (int i = 1; i < clauses.size(); i++) {
+                Clause other = clauses.get(i);
+                int otherDoc = other.doc() < doc ? other.advance(doc) : other.doc();
+                if (otherDoc > doc) {
+                    doc = otherDoc == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(otherDoc);
+                    continue candidates;
+                }
+            }
+
+            if (postIds[doc] != null) {
+                float score = 0;
+                for (Clause clause : clauses) {
+                    score += clause.score();
+                }
+                if (top.size() < limit || score > top.peek().score()) {
+                    top.add(new ScoredDoc(doc, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+            doc = lead.nextDoc();
+        }
+
+        Hit[] hits = new Hit[top.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            ScoredDoc scored = top.poll();
+            hits[i] = new Hit(postIds[scored.doc()], titles[scored.doc()], scored.score());
+        }
+        return Arrays.asList(hits);
+    }
+
+    //以大小為 MAX_PREFIX_TERMS 的 heap 保留文章數最多的，不排序全部
+    private List<Postings> expand(String prefix) {
+        PriorityQueue<Postings> expansions = new PriorityQueue<>(MAX_PREFIX_TERMS + 1, Comparator.comparingInt(postings -> postings.docFreq));
+        for (Postings postings : sortedTerms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (expansions.size() < MAX_PREFIX_TERMS) {
+                expansions.add(postings);
+            } else if (postings.docFreq > expansions.peek().docFreq) {
+                expansions.poll();
+                expansions.add(postings);
+            }
+        }
+        return new ArrayList<>(expansions);
+    }
+
+    private int addDoc(UUID postId, String title, int length) {
+        if (maxDoc == postIds.length) {
+            int capacity = postIds.length * 2;
+            postIds = Arrays.copyOf(postIds, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        int doc = maxDoc++;
+        postIds[doc] = postId;
+        titles[doc] = title;
+        lengths[doc] = length;
+        docIds.put(postId, doc);
+        totalLength += length;
+        return doc;
+    }
+
+    //只標記刪除，posting list 中的舊 doc id 在查詢時略過，compact 時才移除
+    private void delete(UUID postId) {
+        Integer doc = docIds.remove(postId);
+        if (doc == null) {
+            return;
+        }
+
+        postIds[doc] = null;
+        titles[doc] = null;
+        totalLength -= lengths[doc];
+        deletedDocs++;
+
+        if (deletedDocs >= MIN_DELETED_FOR_COMPACTION && deletedDocs * 4L > maxDoc) {
+            this.compact();
+        }
+    }
+
+    //未刪除的文章依原本的順序重新編號，doc id 仍然遞增，posting list 只需要依序重新編碼
+    private void compact() {
+        int[] remap = new int[maxDoc];
+        int live = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (postIds[doc] == null) {
+                remap[doc] = -1;
+                continue;
+            }
+            remap[doc] = live;
+            postIds[live] = postIds[doc];
+            titles[live] = titles[doc];
+            lengths[live] = lengths[doc];
+            docIds.put(postIds[live], live);
+            live++;
+        }
+        Arrays.fill(postIds, live, maxDoc, null);
+        Arrays.fill(titles, live, maxDoc, null);
+
+        this.compact(terms, remap);
+        this.compact(prefixes, remap);
+        sortedTerms.values().removeIf(postings -> postings.docFreq == 0);
+
+        maxDoc = live;
+        deletedDocs = 0;
+    }
+
+    //posting list 直接取代內容（terms 與 sortedTerms 共用同一個物件），沒有文章的字詞從 map 移除
+    private void compact(Map<String, Postings> lists, int[] remap) {
+        Iterator<Postings> iterator = lists.values().iterator();
+        while (iterator.hasNext()) {
+            Postings list = iterator.next();
+            Postings compacted = new Postings();
+            PostingsIterator postings = new PostingsIterator(list);
+            for (int doc = postings.next(); doc != NO_MORE_DOCS; doc = postings.next()) {
+                if (remap[doc] >= 0) {
+                    compacted.add(remap[doc], postings.freq, lengths[remap[doc]]);
+                }
+            }
+
+            list.replaceWith(compacted);
+            if (compacted.docFreq == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 寫入快照：先寫到暫存檔再以 rename 取代，寫到一半失敗不會破壞既有的快照。
+     * 寫入前先 compact（需要寫入鎖），之後降級成讀取鎖寫檔，寫檔期間查詢不受影響。
+     * watermark 由呼叫端決定，載入後用來找出之後有變更的文章。
+     */
+    public void writeTo(Path path, LocalDateTime watermark) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        lock.writeLock().lock();
+        try {
+            if (deletedDocs > 0) {
+                this.compact();
+            }
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            CRC32 checksum = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, checksum), 1 << 16))) {
+
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeLong(watermark.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(watermark.getNano());
+
+                out.writeInt(maxDoc);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    out.writeLong(postIds[doc].getMostSignificantBits());
+                    out.writeLong(postIds[doc].getLeastSignificantBits());
+                    out.writeInt(lengths[doc]);
+                    writeString(out, titles[doc]);
+                }
+
+                writePostings(out, sortedTerms);
+                writePostings(out, prefixes);
+
+                out.flush();
+                //checksum 本身不在計算範圍內，直接寫到檔案
+                new DataOutputStream(file).writeLong(checksum.getValue());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以 memory-mapped file 讀取快照：由作業系統的 page cache 直接對應到記憶體，不經過串流緩衝區複製，
+     * 驗證 checksum 之後把 posting list 複製到 heap（之後的更新會附加在 list 尾端，不能留在唯讀的 mapping 上）。
+     * 格式不符或 checksum 錯誤時丟出 IOException。
+     */
+    public static Snapshot readFrom(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Long.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid search index snapshot size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int contentSize = (int) size - Long.BYTES;
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(0, contentSize));
+            if (checksum.getValue() != buffer.getLong(contentSize)) {
+                throw new IOException("Search index snapshot checksum mismatch");
+            }
+
+            ByteBuffer in = buffer.slice(0, contentSize);
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_FORMAT) {
+                throw new IOException("Unsupported search index snapshot format");
+            }
+            LocalDateTime watermark = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+
+            InvertedIndex index = new InvertedIndex();
+            int docs = in.getInt();
+            for (int doc = 0; doc < docs; doc++) {
+                UUID postId = new UUID(in.getLong(), in.getLong());
+                int length = in.getInt();
+                index.addDoc(postId, readString(in), length);
+            }
+
+            readPostings(in, index.terms);
+            index.sortedTerms.putAll(index.terms);
+            readPostings(in, index.prefixes);
+
+            return new Snapshot(index, watermark);
+        } catch (RuntimeException ex) {
+            //截斷或內容不符時 ByteBuffer 丟出 BufferUnderflowException 等例外
+            throw new IOException("Corrupted search index snapshot " + path, ex);
+        }
+    }
+
+    private static void writePostings(DataOutputStream out, Map<String, Postings> lists) throws IOException {
+        out.writeInt(lists.size());
+        for (Map.Entry<String, Postings> entry : lists.entrySet()) {
+            Postings postings = entry.getValue();
+            writeString(out, entry.getKey());
+            out.writeInt(postings.docFreq);
+            out.writeInt(postings.lastDoc);
+            out.writeInt(postings.tailMaxFreq);
+            out.writeInt(postings.tailMinLength);
+            out.writeInt(postings.maxFreq);
+            out.writeInt(postings.minLength);
+            out.writeInt(postings.length);
+            out.write(postings.data, 0, postings.length);
+            out.writeInt(postings.blockCount);
+            for (int i = 0; i < postings.blockCount; i++) {
+                out.writeInt(postings.blockLastDocs[i]);
+                out.writeInt(postings.blockEndOffsets[i]);
+                out.writeInt(postings.blockMaxFreqs[i]);
+                out.writeInt(postings.blockMinLengths[i]);
+            }
+        }
+    }
+
+    private static void readPostings(ByteBuffer in, Map<String, Postings> lists) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            String term = readString(in);
+            Postings postings = new Postings();
+            postings.docFreq = in.getInt();
+            postings.lastDoc = in.getInt();
+            postings.tailMaxFreq = in.getInt();
+            postings.tailMinLength = in.getInt();
+            postings.maxFreq = in.getInt();
+            postings.minLength = in.getInt();
+            postings.length = in.getInt();
+            postings.data = new byte[postings.length];
+            in.get(postings.data);
+            postings.blockCount = in.getInt();
+            postings.blockLastDocs = new int[postings.blockCount];
+            postings.blockEndOffsets = new int[postings.blockCount];
+            postings.blockMaxFreqs = new int[postings.blockCount];
+            postings.blockMinLengths = new int[postings.blockCount];
+            for (int block = 0; block < postings.blockCount; block++) {
+                postings.blockLastDocs[block] = in.getInt();
+                postings.blockEndOffsets[block] = in.getInt();
+                postings.blockMaxFreqs[block] = in.getInt();
+                postings.blockMinLengths[block] = in.getInt();
+            }
+            lists.put(term, postings);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record ScoredDoc(int doc, float score) {
+    }
+
+    /**
+     * 一個字詞的 posting list。每筆為 (doc id 與前一筆的差 << 1 | frequency 是否為 1) 的 varint，
+     * frequency 不是 1 時後面再接一個 varint。
+     * 區塊 i 為第 i * BLOCK_SIZE 筆起的 BLOCK_SIZE 筆，已滿的區塊記錄最後的 doc id、下一個區塊的起始位置、
+     * 最大的 frequency 與最短的文章長度；最後一個（未滿的）區塊記錄在 lastDoc、tailMaxFreq、tailMinLength。
+     */
+    static final class Postings {
+
+        private byte[] data = new byte[8];
+
+        private int length;
+
+        private int docFreq;
+
+        private int lastDoc = -1;
+
+        private int tailMaxFreq;
+
+        private int tailMinLength = Integer.MAX_VALUE;
+
+        //整個 list 最大的 frequency 與最短的文章長度（包含已刪除的文章，compact 時重新計算）
+        private int maxFreq;
+
+        private int minLength = Integer.MAX_VALUE;
+
+        private int blockCount;
+
+        private int[] blockLastDocs = new int[0];
+
+        private int[] blockEndOffsets = new int[0];
+
+        private int[] blockMaxFreqs = new int[0];
+
+        private int[] blockMinLengths = new int[0];
+
+        void add(int doc, int freq, int docLength) {
+            if (docFreq > 0 && docFreq % BLOCK_SIZE == 0) {
+                this.closeBlock();
+            }
+
+            int delta = doc - lastDoc;
+            if (freq == 1) {
+                this.writeVarInt(delta << 1 | 1);
+            } else {
+                this.writeVarInt(delta << 1);
+                this.writeVarInt(freq);
+            }
+            lastDoc = doc;
+            docFreq++;
+            tailMaxFreq = Math.max(tailMaxFreq, freq);
+            tailMinLength = Math.min(tailMinLength, docLength);
+            maxFreq = Math.max(maxFreq, freq);
+            minLength = Math.min(minLength, docLength);
+        }
+
+        private void closeBlock() {
+            if (blockCount == blockLastDocs.length) {
+                int capacity = Math.max(4, blockCount * 2);
+                blockLastDocs = Arrays.copyOf(blockLastDocs, capacity);
+                blockEndOffsets = Arrays.copyOf(blockEndOffsets, capacity);
+                blockMaxFreqs = Arrays.copyOf(blockMaxFreqs, capacity);
+                blockMinLengths = Arrays.copyOf(blockMinLengths, capacity);
+            }
+            blockLastDocs[blockCount] = lastDoc;
+            blockEndOffsets[blockCount] = length;
+            blockMaxFreqs[blockCount] = tailMaxFreq;
+            blockMinLengths[blockCount] = tailMinLength;
+            blockCount++;
+
+            tailMaxFreq = 0;
+            tailMinLength = Integer.MAX_VALUE;
+        }
+
+        //第一個最後的 doc id >= target 的區塊（blockCount 為未滿的區塊），沒有時回傳 -1
+        int blockOf(int target) {
+            if (target > lastDoc) {
+                return -1;
+            }
+            int block = Arrays.binarySearch(blockLastDocs, 0, blockCount, target);
+            return block >= 0 ? block : -block - 1;
+        }
+
+        int blockLastDoc(int block) {
+            return block < blockCount ? blockLastDocs[block] : lastDoc;
+        }
+
+        int blockMaxFreq(int block) {
+            return block < blockCount ? blockMaxFreqs[block] : tailMaxFreq;
+        }
+
+        int blockMinLength(int block) {
+            return block < blockCount ? blockMinLengths[block] : tailMinLength;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        //compact 後的內容，陣列縮到實際大小
+        private void replaceWith(Postings compacted) {
+            data = Arrays.copyOf(compacted.data, compacted.length);
+            length = compacted.length;
+            docFreq = compacted.docFreq;
+            lastDoc = compacted.lastDoc;
+            tailMaxFreq = compacted.tailMaxFreq;
+            tailMinLength = compacted.tailMinLength;
+            maxFreq = compacted.maxFreq;
+            minLength = compacted.minLength;
+            blockCount = compacted.blockCount;
+            blockLastDocs = Arrays.copyOf(compacted.blockLastDocs, blockCount);
+            blockEndOffsets = Arrays.copyOf(compacted.blockEndOffsets, blockCount);
+            blockMaxFreqs = Arrays.copyOf(compacted.blockMaxFreqs, blockCount);
+            blockMinLengths = Arrays.copyOf(compacted.blockMinLengths, blockCount);
+        }
+    }
+
+    static final class PostingsIterator {
+
+        private final Postings postings;
+
+        private int offset;
+
+        //已讀取的筆數
+        private int index;
+
+        private int doc = -1;
+
+        private int freq;
+
+        PostingsIterator(Postings postings) {
+            this.postings = postings;
+        }
+
+        int next() {
+            if (index == postings.docFreq) {
+                return doc = NO_MORE_DOCS;
+            }
+
+            int value = this.readVarInt();
+            doc += value >>> 1;
+            freq = (value & 1) != 0 ? 1 : this.readVarInt();
+            index++;
+            return doc;
+        }
+
+        //第一個 >= target 的 doc id；先找到所在的區塊，從區塊的開頭逐筆解碼
+        int advance(int target) {
+            int block = postings.blockOf(target);
+            if (block < 0) {
+                index = postings.docFreq;
+                return doc = NO_MORE_DOCS;
+            }
+            if (block > 0 && block * BLOCK_SIZE > index) {
+                offset = postings.blockEndOffsets[block - 1];
+                doc = postings.blockLastDocs[block - 1];
+                index = block * BLOCK_SIZE;
+            }
+
+            while (doc < target) {
+                this.next();
+            }
+            return doc;
+        }
+
+        private int readVarInt() {
+            byte[] data = postings.data;
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private interface Clause {
+
+        int doc();
+
+        int nextDoc();
+
+        int advance(int target);
+
+        float score();
+
+        //移到包含 target 之後第一篇的區塊（不解碼），回傳區塊最後的 doc id；沒有時回傳 NO_MORE_DOCS
+        int advanceShallow(int target);
+
+        //advanceShallow 找到的區塊中分數的上限
+        float maxScore();
+
+        //整個 posting list 的分數上限
+        float globalMaxScore();
+
+        long cost();
+    }
+
+    private final class TermClause implements Clause {
+
+        private final PostingsIterator postings;
+
+        private final float idf;
+
+        private final float averageLength;
+
+        private final Postings list;
+
+        private final int docFreq;
+
+        private int shallowBlock = -1;
+
+        private float shallowMaxScore;
+
+        //docFreq 包含尚未 compact 的已刪除文章，idf 會略為偏低
+        private TermClause(Postings postings, int liveDocs, float averageLength) {
+            this.postings = new PostingsIterator(postings);
+            this.list = postings;
+            this.docFreq = postings.docFreq;
+            this.idf = (float) Math.log(1 + (Math.max(0, liveDocs - docFreq) + 0.5) / (docFreq + 0.5));
+            this.averageLength = averageLength;
+        }
+
+        @Override
+        public int doc() {
+            return postings.doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            return postings.next();
+        }
+
+        @Override
+        public int advance(int target) {
+            return postings.advance(target);
+        }
+
+        @Override
+        public float score() {
+            return this.bm25(postings.freq, lengths[postings.doc]);
+        }
+
+        //target 只會遞增，仍在目前的區塊內時不需要重新搜尋
+        @Override
+        public int advanceShallow(int target) {
+            if (shallowBlock < 0 || target > list.blockLastDoc(shallowBlock)) {
+                shallowBlock = list.blockOf(target);
+                if (shallowBlock < 0) {
+                    shallowMaxScore = 0;
+                    return NO_MORE_DOCS;
+                }
+                //frequency 越大、文章越短分數越高，以區塊中最大的 frequency 與最短的長度計算上限
+                shallowMaxScore = this.bm25(list.blockMaxFreq(shallowBlock), list.blockMinLength(shallowBlock));
+            }
+            return list.blockLastDoc(shallowBlock);
+        }
+
+        @Override
+        public float maxScore() {
+            return shallowMaxScore;
+        }
+
+        @Override
+        public float globalMaxScore() {
+            return this.bm25(list.maxFreq, list.minLength);
+        }
+
+        private float bm25(float tf, int length) {
+            float norm = K1 * (1 - B + B * length / averageLength);
+            return idf * tf * (K1 + 1) / (tf + norm);
+        }
+
+        @Override
+        public long cost() {
+            return docFreq;
+        }
+    }
+
+    //前綴展開的多個字詞任一個出現即可，分數取最高的一個（同一篇文章有 spring 與 spa 不會加倍）
+    private static final class PrefixClause implements Clause {
+
+        private final List<TermClause> clauses;
+
+        private final PriorityQueue<TermClause> queue;
+
+        private final long cost;
+
+        private int doc = -1;
+
+        private int shallowTarget;
+
+        private int shallowUpTo = -1;
+
+        private PrefixClause(List<TermClause> clauses) {
+            this.clauses = clauses;
+            this.queue = new PriorityQueue<>(clauses.size(), Comparator.comparingInt(TermClause::doc));
+            long cost = 0;
+            for (TermClause clause : clauses) {
+                cost += clause.cost();
+            }
+            this.cost = cost;
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (doc == -1) {
+                for (TermClause clause : clauses) {
+                    if (clause.nextDoc() != NO_MORE_DOCS) {
+                        queue.add(clause);
+                    }
+                }
+            } else {
+                while (!queue.isEmpty() && queue.peek().doc() == doc) {
+                    TermClause clause = queue.poll();
+                    if (clause.nextDoc() != NO_MORE_DOCS) {
+                        queue.add(clause);
+                    }
+                }
+            }
+            return doc = queue.isEmpty() ? NO_MORE_DOCS : queue.peek().doc();
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc == -1) {
+                for (TermClause clause : clauses) {
+                    if (clause.advance(target) != NO_MORE_DOCS) {
+                        queue.add(clause);
+                    }
+                }
+            } else {
+                while (!queue.isEmpty() && queue.peek().doc() < target) {
+                    TermClause clause = queue.poll();
+                    if (clause.advance(target) != NO_MORE_DOCS) {
+                        queue.add(clause);
+                    }
+                }
+            }
+            return doc = queue.isEmpty() ? NO_MORE_DOCS : queue.peek().doc();
+        }
+
+        @Override
+        public float score() {
+            float score = 0;
+            for (TermClause clause : queue) {
+                if (clause.doc() == doc) {
+                    score = Math.max(score, clause.score());
+                }
+            }
+            return score;
+        }
+
+        //範圍到最早結束的區塊為止；下一篇已經在範圍之後的字詞（通常是較少見、idf 較高的字詞）不計入上限，
+        //否則少見字詞涵蓋範圍很大的區塊會讓每個範圍的上限都很高，無法略過
+        @Override
+        public int advanceShallow(int target) {
+            shallowTarget = target;
+            shallowUpTo = NO_MORE_DOCS;
+            for (TermClause clause : clauses) {
+                int next = Math.max(clause.doc(), target);
+                if (next != NO_MORE_DOCS) {
+                    shallowUpTo = Math.min(shallowUpTo, clause.advanceShallow(next));
+                }
+            }
+            return shallowUpTo;
+        }
+
+        @Override
+        public float maxScore() {
+            float maxScore = 0;
+            for (TermClause clause : clauses) {
+                if (Math.max(clause.doc(), shallowTarget) <= shallowUpTo) {
+                    maxScore = Math.max(maxScore, clause.maxScore());
+                }
+            }
+            return maxScore;
+        }
+
+        @Override
+        public float globalMaxScore() {
+            float maxScore = 0;
+            for (TermClause clause : clauses) {
+                maxScore = Math.max(maxScore, clause.globalMaxScore());
+            }
+            return maxScore;
+        }
+
+        @Override
+        public long cost() {
+            return cost;
+        }
+    }
+}
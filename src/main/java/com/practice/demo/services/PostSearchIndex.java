@@ -0,0 +1,188 @@
+package com.practice.demo.services;
+
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.projections.PostIndexView;
+import com.practice.demo.events.PostEvent;
+import com.practice.demo.events.PostEventListener;
+import com.practice.demo.repositories.PostRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 已發布文章的記憶體內搜尋索引（InvertedIndex），用於邊輸入邊搜尋，查詢不需要存取資料庫。
+ *
+ * 啟動時（接受請求之前）從資料庫建立；設定 snapshot-path 時改為載入快照，
+ * 再補上快照之後有更新的文章、移除已經不是已發布的文章，不需要重新分詞所有文章。
+ * 之後由文章事件（新增、更新、發布、刪除）逐篇更新，重新從資料庫讀取目前的標題與內容，
+ * 事件的順序或合併不影響結果。快照每 snapshot-interval（有變更時）與關閉時寫入。
+ *
+ * 索引只在這個 JVM 中，其他節點寫入的文章要等到重新啟動才會出現。
+ */
+@Slf4j
+@Component
+public class PostSearchIndex implements PostEventListener, InitializingBean, DisposableBean {
+
+    //快照之後 commit、但事件在寫入快照時還沒送達的文章，updatedAt 會早於 watermark，重疊一段時間重新索引
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(5);
+
+    private final PostRepository postRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Path snapshotPath;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public PostSearchIndex(
+            PostRepository postRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${blog.search.index.snapshot-path:}") String snapshotPath) {
+
+        this.postRepository = postRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+
+        Gauge.builder("post.search.index.documents", this, searchIndex -> searchIndex.index.size())
+                .description("Published posts in the in-memory search index")
+                .register(meterRegistry);
+        Gauge.builder("post.search.index.terms", this, searchIndex -> searchIndex.index.termCount())
+                .register(meterRegistry);
+        Gauge.builder("post.search.index.postings", this, searchIndex -> searchIndex.index.postingsBytes())
+                .description("Compressed size of the posting lists")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long start = System.nanoTime();
+
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            try {
+                InvertedIndex.Snapshot snapshot = InvertedIndex.readFrom(snapshotPath);
+                index = snapshot.index();
+                int changed = this.catchUp(snapshot.watermark());
+                log.info("Loaded post search index snapshot with {} posts ({} changed since {}) in {} ms",
+                        index.size(), changed, snapshot.watermark(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                dirty.set(changed > 0);
+                return;
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Failed to load post search index snapshot {}, rebuilding from the database", snapshotPath, ex);
+                index = new InvertedIndex();
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<PostIndexView> posts = postRepository.streamIndexViews(PostStatus.PUBLISHED)) {
+                posts.forEach(post -> index.put(post.id(), post.title(), post.content()));
+            }
+        });
+        log.info("Built post search index with {} posts and {} terms in {} ms",
+                index.size(), index.termCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        dirty.set(snapshotPath != null);
+    }
+
+    private int catchUp(LocalDateTime watermark) {
+        return transactionTemplate.execute(status -> {
+            int changed = 0;
+            try (Stream<PostIndexView> posts = postRepository.streamIndexViewsUpdatedSince(PostStatus.PUBLISHED, watermark.minus(CATCH_UP_OVERLAP))) {
+                for (PostIndexView post : (Iterable<PostIndexView>) posts::iterator) {
+                    index.put(post.id(), post.title(), post.content());
+                    changed++;
+                }
+            }
+
+            //刪除與取消發布的文章
+            Set<UUID> published = new HashSet<>(postRepository.findIdsByPostStatus(PostStatus.PUBLISHED));
+            for (UUID postId : index.postIds()) {
+                if (!published.contains(postId)) {
+                    index.remove(postId);
+                    changed++;
+                }
+            }
+            return changed;
+        });
+    }
+
+    //事件只用來知道哪些文章有變更；目前已發布的文章重新讀取並索引，其他的從索引移除
+    @Override
+    public void onPostEvents(List<PostEvent> events) {
+        List<UUID> published = new ArrayList<>(events.size());
+        for (PostEvent event : events) {
+            if (event.after() != null && event.after().status() == PostStatus.PUBLISHED) {
+                published.add(event.postId());
+            } else {
+                index.remove(event.postId());
+            }
+        }
+
+        if (!published.isEmpty()) {
+            List<PostIndexView> posts = transactionTemplate.execute(status -> postRepository.findIndexViewsByIds(PostStatus.PUBLISHED, published));
+
+            //讀取時已經被刪除或取消發布的文章，之後的事件也會移除，這裡先移除
+            Set<UUID> found = new HashSet<>();
+            for (PostIndexView post : posts) {
+                index.put(post.id(), post.title(), post.content());
+                found.add(post.id());
+            }
+            for (UUID postId : published) {
+                if (!found.contains(postId)) {
+                    index.remove(postId);
+                }
+            }
+        }
+
+        dirty.set(true);
+    }
+
+    public List<InvertedIndex.Hit> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    //watermark 取寫入之前的時間：寫入期間的變更在下次載入時由 catchUp 補上
+    @Scheduled(fixedDelayString = "${blog.search.index.snapshot-interval:10m}", initialDelayString = "${blog.search.index.snapshot-interval:10m}")
+    public synchronized void snapshot() {
+        if (snapshotPath == null || !dirty.getAndSet(false)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            index.writeTo(snapshotPath, LocalDateTime.now());
+            log.debug("Wrote post search index snapshot with {} posts in {} ms", index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException ex) {
+            dirty.set(true);
+            log.warn("Failed to write post search index snapshot {}", snapshotPath, ex);
+        }
+    }
+
+    //PostEventBus 依賴所有的消費者，會先關閉並送完佇列中的事件，之後才寫入快照
+    @Override
+    public void destroy() {
+        this.snapshot();
+    }
+}
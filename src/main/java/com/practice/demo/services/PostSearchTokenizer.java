@@ -0,0 +1,114 @@
+package com.practice.demo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * InvertedIndex 使用的分詞：英數字以連續的字母或數字為一個字詞（轉成小寫），
+ * 中日文沒有空白分隔，連續的中日文字元切成重疊的兩個字（bigram），例如「效能調校」→ 效能、能調、調校；
+ * 只有一個字時以單字為字詞。HTML 標籤（規則與 PostTextAnalyzer 相同）與標點符號視為分隔。
+ */
+public final class PostSearchTokenizer {
+
+    //超過的部分捨棄，避免 base64、網址之類的長字串產生大量只出現一次的長字詞
+    public static final int MAX_TERM_LENGTH = 32;
+
+    private PostSearchTokenizer() {
+    }
+
+    //lastIsPrefix：查詢的最後一個字詞後面沒有空白或標點，使用者可能還在輸入，以前綴比對
+    public record Query(List<String> terms, boolean lastIsPrefix) {
+    }
+
+    //依出現順序送出每個字詞（可能重複），回傳字詞數
+    public static int tokenize(String text, boolean html, Consumer<String> terms) {
+        return scan(text, html, terms);
+    }
+
+    public static Query parseQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        scan(query, false, terms::add);
+
+        boolean lastIsPrefix = false;
+        if (!terms.isEmpty()) {
+            int last = query.codePointBefore(query.length());
+            lastIsPrefix = PostTextAnalyzer.isLetterOrDigit(last) || PostTextAnalyzer.isCjk(last);
+        }
+        return new Query(List.copyOf(terms), lastIsPrefix);
+    }
+
+    private static int scan(String text, boolean html, Consumer<String> terms) {
+        if (text == null) {
+            return 0;
+        }
+
+        int length = text.length();
+        int count = 0;
+        StringBuilder word = new StringBuilder(MAX_TERM_LENGTH);
+        //目前這段中日文的前一個字元與長度
+        int previousCjk = -1;
+        int cjkRun = 0;
+        boolean inTag = false;
+
+        for (int i = 0; i < length; ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (inTag) {
+                if (codePoint == '>') {
+                    inTag = false;
+                }
+                continue;
+            }
+
+            boolean tagStart = html && codePoint == '<' && i < length && PostTextAnalyzer.isTagStart(text.charAt(i));
+            boolean cjk = !tagStart && PostTextAnalyzer.isCjk(codePoint);
+
+            if (!cjk && cjkRun > 0) {
+                if (cjkRun == 1) {
+                    terms.accept(Character.toString(previousCjk));
+                    count++;
+                }
+                previousCjk = -1;
+                cjkRun = 0;
+            }
+
+            if (cjk) {
+                count += flush(word, terms);
+                if (previousCjk != -1) {
+                    terms.accept(new StringBuilder(4).appendCodePoint(previousCjk).appendCodePoint(codePoint).toString());
+                    count++;
+                }
+                previousCjk = codePoint;
+                cjkRun++;
+            } else if (!tagStart && PostTextAnalyzer.isLetterOrDigit(codePoint)) {
+                if (word.length() < MAX_TERM_LENGTH) {
+                    word.appendCodePoint(codePoint < 0x80 ? toLowerAscii(codePoint) : Character.toLowerCase(codePoint));
+                }
+            } else {
+                count += flush(word, terms);
+                inTag = tagStart;
+            }
+        }
+
+        if (cjkRun == 1) {
+            terms.accept(Character.toString(previousCjk));
+            count++;
+        }
+        return count + flush(word, terms);
+    }
+
+    private static int flush(StringBuilder word, Consumer<String> terms) {
+        if (word.isEmpty()) {
+            return 0;
+        }
+        terms.accept(word.toString());
+        word.setLength(0);
+        return 1;
+    }
+
+    private static int toLowerAscii(int codePoint) {
+        return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+    }
+}
@@ -1,24 +1,48 @@
 package com.practice.demo.services;
 
+import com.practice.demo.domain.CursorPage;
+import com.practice.demo.domain.PostImportItem;
+import com.practice.demo.domain.PostStatus;
 import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
 import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.PostImportResultDto;
+import com.practice.demo.domain.dtos.PostSearchResultDto;
+import com.practice.demo.domain.dtos.PostSuggestionDto;
+import com.practice.demo.domain.dtos.PostSummaryDto;
 import com.practice.demo.domain.dtos.UpdatePostRequestDto;
-import com.practice.demo.domain.entities.User;
+import com.practice.demo.domain.projections.PostVersionView;
 
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface PostService {
 
     PostDto getPost(UUID id);
 
-    List<PostDto> getAllPosts(UUID categoryId, UUID tagId);
+    PostVersionView getPostVersion(UUID id);
 
-    List<PostDto> getDraftPosts(User user);
+    CursorPage<PostSummaryDto> getAllPosts(UUID categoryId, UUID tagId, String cursor, Integer size);
 
-    PostDto createPost(User user, CreatePostRequestDto createPostRequestDto);
+    CursorPage<PostSearchResultDto> searchPosts(String query, String cursor, Integer size);
+
+    List<PostSuggestionDto> suggestPosts(String query, Integer size);
+
+    CursorPage<PostSummaryDto> getDraftPosts(UUID authorId, String cursor, Integer size);
+
+    void exportPosts(UUID requesterId, PostStatus postStatus, UUID categoryId, LocalDateTime since, Consumer<PostDto> consumer);
+
+    PostDto createPost(UUID authorId, CreatePostRequestDto createPostRequestDto);
+
+    PostImportResultDto importPosts(UUID authorId, Iterator<PostImportItem> items);
 
     PostDto updatePost(UUID id, UpdatePostRequestDto updatePostRequestDto);
 
+    //expectedVersion 為 null 時不檢查版本
+    PostDto patchPost(UUID id, Long expectedVersion, PatchPostRequestDto patchPostRequestDto);
+
     void deletePost(UUID id);
 }
@@ -0,0 +1,186 @@
+package com.practice.demo.services;
+
+import java.util.HexFormat;
+
+/**
+ * 文章內容的寫入時分析：字數、閱讀時間、純文字摘要與內容雜湊，只掃描一次 content。
+ * 除了長度固定的摘要緩衝區之外不配置與內容大小成正比的物件（不使用 regex、split 或 replaceAll）。
+ * 中日文（漢字、平假名、片假名）每個字算一個字，其他語言以空白分隔的一段文字算一個字。
+ */
+public final class PostTextAnalyzer {
+
+    public static final int WORDS_PER_MINUTE = 200;
+
+    //中文閱讀速度以字數計算
+    public static final int CJK_CHARS_PER_MINUTE = 400;
+
+    public static final int EXCERPT_LENGTH = 200;
+
+    //64-bit FNV-1a，依 UTF-16 字元計算，只用來判斷內容是否有變更
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PostTextAnalyzer() {
+    }
+
+    public record Result(int wordCount, int readingTime, String excerpt, String contentHash) {
+    }
+
+    public static Result analyze(String content) {
+        if (content == null) {
+            content = "";
+        }
+
+        int length = content.length();
+        long hash = FNV_OFFSET_BASIS;
+        int words = 0;
+        int cjkChars = 0;
+
+        //inWord：目前在一段非空白文字中，且已經遇到字母或數字（只有標點的片段不算字）
+        boolean inWord = false;
+        boolean inTag = false;
+
+        //摘要：HTML 標籤視為空白，連續空白合併成一個，多收一個字元用來判斷是否需要截斷
+        StringBuilder excerpt = new StringBuilder(EXCERPT_LENGTH + 3);
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < length; ) {
+            int codePoint = content.codePointAt(i);
+            hash = (hash ^ content.charAt(i)) * FNV_PRIME;
+            if (Character.charCount(codePoint) == 2) {
+                hash = (hash ^ content.charAt(i + 1)) * FNV_PRIME;
+            }
+            i += Character.charCount(codePoint);
+
+            if (inTag) {
+                if (codePoint == '>') {
+                    inTag = false;
+                }
+                continue;
+            }
+
+            //與瀏覽器相同，< 後面接字母、/、! 或 ? 才是標籤，「a < b」不是
+            if (codePoint == '<' && i < length && isTagStart(content.charAt(i))) {
+                inTag = true;
+                inWord = false;
+                pendingSpace = true;
+                continue;
+            }
+
+            if (isSpace(codePoint)) {
+                inWord = false;
+                pendingSpace = true;
+                continue;
+            }
+
+            if (excerpt.length() <= EXCERPT_LENGTH) {
+                if (pendingSpace && !excerpt.isEmpty()) {
+                    excerpt.append(' ');
+                }
+                excerpt.appendCodePoint(codePoint);
+            }
+            pendingSpace = false;
+
+            if (isCjk(codePoint)) {
+                cjkChars++;
+                inWord = false;
+            } else if (!inWord && isLetterOrDigit(codePoint)) {
+                words++;
+                inWord = true;
+            }
+        }
+
+        if (excerpt.length() > EXCERPT_LENGTH) {
+            int end = EXCERPT_LENGTH;
+            if (Character.isHighSurrogate(excerpt.charAt(end - 1))) {
+                end--;
+            }
+            excerpt.setLength(end);
+            excerpt.append("...");
+        }
+
+        //不足一分鐘的文章顯示 1 分鐘
+        int readingTime = (int) Math.ceil((double) words / WORDS_PER_MINUTE + (double) cjkChars / CJK_CHARS_PER_MINUTE);
+
+        return new Result(words + cjkChars, readingTime, excerpt.toString(), HexFormat.of().toHexDigits(hash));
+    }
+
+    //與 analyze 回傳的 contentHash 相同，用來判斷儲存的分析結果是否對應目前的內容；雜湊相同不代表內容相同
+    public static String contentHash(String content) {
+        if (content == null) {
+            content = "";
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < content.length(); i++) {
+            hash = (hash ^ content.charAt(i)) * FNV_PRIME;
+        }
+        return HexFormat.of().toHexDigits(hash);
+    }
+
+    //去掉 HTML 標籤並合併空白後的純文字，標籤與空白的規則與 analyze 的摘要相同；用於搜尋結果的片段
+    public static String plainText(String content) {
+        if (content == null) {
+            return "";
+        }
+
+        int length = content.length();
+        StringBuilder text = new StringBuilder(length);
+        boolean inTag = false;
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < length; ) {
+            int codePoint = content.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (inTag) {
+                if (codePoint == '>') {
+                    inTag = false;
+                }
+                continue;
+            }
+
+            if ((codePoint == '<' && i < length && isTagStart(content.charAt(i))) || isSpace(codePoint)) {
+                inTag = codePoint == '<';
+                pendingSpace = true;
+                continue;
+            }
+
+            if (pendingSpace && !text.isEmpty()) {
+                text.append(' ');
+            }
+            text.appendCodePoint(codePoint);
+            pendingSpace = false;
+        }
+        return text.toString();
+    }
+
+    //ASCII 先用範圍判斷，避免每個字元都查 Unicode 屬性表
+    private static boolean isSpace(int codePoint) {
+        if (codePoint < 0x80) {
+            return codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r') || (codePoint >= 0x1C && codePoint <= 0x1F);
+        }
+        return Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint);
+    }
+
+    static boolean isLetterOrDigit(int codePoint) {
+        if (codePoint < 0x80) {
+            return (codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z') || (codePoint >= '0' && codePoint <= '9');
+        }
+        return Character.isLetterOrDigit(codePoint);
+    }
+
+    static boolean isTagStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '/' || c == '!' || c == '?';
+    }
+
+    //漢字（含擴充 A 與擴充 B 之後的補充平面）、相容漢字、平假名、片假名；韓文以空白分詞，不在此列
+    //與 PostSearchTokenizer 共用，分詞與字數的規則一致
+    static boolean isCjk(int codePoint) {
+        return (codePoint >= 0x4E00 && codePoint <= 0x9FFF)
+                || (codePoint >= 0x3400 && codePoint <= 0x4DBF)
+                || (codePoint >= 0x3040 && codePoint <= 0x30FF)
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF)
+                || (codePoint >= 0x20000 && codePoint <= 0x3134F);
+    }
+}
@@ -0,0 +1,256 @@
+package com.practice.demo.services;
+
+import com.practice.demo.Config.CacheConfig;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CategoryDto;
+import com.practice.demo.domain.dtos.TagDto;
+import com.practice.demo.events.PostEvent;
+import com.practice.demo.events.PostEventBus;
+import com.practice.demo.events.PostEventListener;
+import com.practice.demo.events.PostState;
+import com.practice.demo.repositories.CategoryRepository;
+import com.practice.demo.repositories.PublishedPostCountRepository;
+import com.practice.demo.repositories.TagRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 維護 categories / tags 的 published_post_count。
+ *
+ * 從文章事件的前後狀態計算增減量（已發布的文章對所屬分類與每個標籤各算 1），先累計在記憶體，
+ * 每 flush-interval 以 JDBC batch 的 UPDATE 一次寫入，之後清除分類與標籤列表的快取並遞增 TaxonomyVersion。
+ * 所以列表上的數量最多延遲一個 flush-interval（加上事件的 linger）。
+ *
+ * 校正工作每 reconcile-interval（與啟動時）以 GROUP BY 重新計算，數量不符（例如程序在 flush 前結束，
+ * 或加上欄位前就存在的文章）時記錄 log 與 published.post.count.drift 指標，並改成重新計算的值。
+ * 已經 commit 但還在 event bus 佇列中的事件，重新計算時已經包含，之後送達又會再加一次，
+ * 所以校正前後都會先取得佇列中的事件（PostEventBus.deliverPending）。
+ */
+@Slf4j
+@Component
+public class PublishedPostCounters implements PostEventListener {
+
+    private final PublishedPostCountRepository publishedPostCountRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final TagRepository tagRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CacheManager cacheManager;
+
+    private final TaxonomyVersion taxonomyVersion;
+
+    //PostEventBus 依賴所有的消費者（包括這個），使用時才取得
+    private final ObjectProvider<PostEventBus> postEventBus;
+
+    //尚未寫入的增減量；ConcurrentHashMap 依 bin 分段加鎖，不同分類 / 標籤的累加不會互相等待
+    //merge 與 remove 對同一個 key 是原子操作，flush 取出之後的累加會留到下一次，不會遺失
+    private final Map<UUID, Long> categoryDeltas = new ConcurrentHashMap<>();
+
+    private final Map<UUID, Long> tagDeltas = new ConcurrentHashMap<>();
+
+    private final Counter categoryDrift;
+
+    private final Counter tagDrift;
+
+    public PublishedPostCounters(
+            PublishedPostCountRepository publishedPostCountRepository,
+            CategoryRepository categoryRepository,
+            TagRepository tagRepository,
+            TransactionTemplate transactionTemplate,
+            CacheManager cacheManager,
+            TaxonomyVersion taxonomyVersion,
+            ObjectProvider<PostEventBus> postEventBus,
+            MeterRegistry meterRegistry) {
+
+        this.publishedPostCountRepository = publishedPostCountRepository;
+        this.categoryRepository = categoryRepository;
+        this.tagRepository = tagRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.taxonomyVersion = taxonomyVersion;
+        this.postEventBus = postEventBus;
+
+        Gauge.builder("published.post.count.pending", categoryDeltas, Map::size)
+                .description("Categories with published post count changes not yet written")
+                .tag("type", "category")
+                .register(meterRegistry);
+        Gauge.builder("published.post.count.pending", tagDeltas, Map::size)
+                .description("Tags with published post count changes not yet written")
+                .tag("type", "tag")
+                .register(meterRegistry);
+        this.categoryDrift = Counter.builder("published.post.count.drift")
+                .description("Sum of corrected differences between stored and recomputed counts")
+                .tag("type", "category")
+                .register(meterRegistry);
+        this.tagDrift = Counter.builder("published.post.count.drift")
+                .description("Sum of corrected differences between stored and recomputed counts")
+                .tag("type", "tag")
+                .register(meterRegistry);
+    }
+
+    public record Drift(int categories, int tags) {
+    }
+
+    //校正時讀取的儲存值與重新計算的值
+    private record Counts(List<CategoryDto> storedCategories, List<CategoryDto> recomputedCategories,
+                          List<TagDto> storedTags, List<TagDto> recomputedTags) {
+    }
+
+    //合併後的事件：before 是第一個事件之前的狀態，after 是最後的狀態，相減就是這段期間的增減量
+    @Override
+    public void onPostEvents(List<PostEvent> events) {
+        for (PostEvent event : events) {
+            this.apply(event.before(), -1);
+            this.apply(event.after(), 1);
+        }
+    }
+
+    private void apply(PostState state, long delta) {
+        if (state == null || state.status() != PostStatus.PUBLISHED) {
+            return;
+        }
+
+        add(categoryDeltas, state.categoryId(), delta);
+        for (UUID tagId : state.tagIds()) {
+            add(tagDeltas, tagId, delta);
+        }
+    }
+
+    //增減量相加為 0 時移除 key（merge 的 remapping 回傳 null），發布後又取消發布不會產生 UPDATE
+    private static void add(Map<UUID, Long> deltas, UUID id, long delta) {
+        deltas.merge(id, delta, (current, added) -> current + added == 0 ? null : current + added);
+    }
+
+    //與 reconcile 互斥，校正期間不會有增減量寫入
+    @Scheduled(fixedDelayString = "${blog.counters.flush-interval:5s}")
+    public synchronized void flush() {
+        Map<UUID, Long> categories = drain(categoryDeltas);
+        Map<UUID, Long> tags = drain(tagDeltas);
+        if (categories.isEmpty() && tags.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                publishedPostCountRepository.addCategoryCounts(categories);
+                publishedPostCountRepository.addTagCounts(tags);
+            });
+        } catch (RuntimeException ex) {
+            //寫入失敗時放回記憶體，下一次 flush 再試
+            categories.forEach((id, delta) -> add(categoryDeltas, id, delta));
+            tags.forEach((id, delta) -> add(tagDeltas, id, delta));
+            log.warn("Failed to write published post counts for {} categories and {} tags, will retry", categories.size(), tags.size(), ex);
+            return;
+        }
+
+        this.countsChanged();
+    }
+
+    //取出目前所有的增減量，依 id 排序
+    private static Map<UUID, Long> drain(Map<UUID, Long> deltas) {
+        Map<UUID, Long> drained = new TreeMap<>();
+        for (UUID id : deltas.keySet()) {
+            Long delta = deltas.remove(id);
+            if (delta != null) {
+                drained.put(id, delta);
+            }
+        }
+        return drained;
+    }
+
+    //先取得 event bus 佇列中的事件並寫入增減量，再重新計算；
+    //重新計算之後再取得一次佇列中的事件：重新計算時已經 commit、但還沒送到這裡的事件成為尚未寫入的增減量，
+    //這些分類與標籤的重新計算結果可能已經包含這些事件，這次不校正，避免之後寫入增減量時重複計算
+    //（commit 到事件進入佇列之間只有同一個執行緒上的幾個呼叫，仍在這之間的事件由下一次校正修正）
+    @Scheduled(fixedDelayString = "${blog.counters.reconcile-interval:1h}")
+    public synchronized Drift reconcile() {
+        postEventBus.getObject().deliverPending(this);
+        this.flush();
+
+        Counts counts = transactionTemplate.execute(status -> new Counts(
+                categoryRepository.findAllWithPostCount(),
+                categoryRepository.countPostsByCategory(PostStatus.PUBLISHED),
+                tagRepository.findAllWithPostCount(),
+                tagRepository.countPostsByTag(PostStatus.PUBLISHED)));
+
+        postEventBus.getObject().deliverPending(this);
+
+        Map<UUID, Long> categories = drifted(
+                counts.storedCategories(), counts.recomputedCategories(),
+                CategoryDto::getId, CategoryDto::getPostCount,
+                categoryDeltas, categoryDrift, "Category");
+        Map<UUID, Long> tags = drifted(
+                counts.storedTags(), counts.recomputedTags(),
+                TagDto::getId, TagDto::getPostCount,
+                tagDeltas, tagDrift, "Tag");
+
+        //flush 與 reconcile 互斥，讀取之後到這裡的儲存值不會被改變
+        transactionTemplate.executeWithoutResult(status -> {
+            publishedPostCountRepository.setCategoryCounts(categories);
+            publishedPostCountRepository.setTagCounts(tags);
+        });
+
+        Drift drift = new Drift(categories.size(), tags.size());
+        if (drift.categories() > 0 || drift.tags() > 0) {
+            log.warn("Corrected published post counts of {} categories and {} tags", drift.categories(), drift.tags());
+            this.countsChanged();
+        }
+
+        return drift;
+    }
+
+    //回傳數量不符的列與重新計算的數量
+    private static <T> Map<UUID, Long> drifted(
+            List<T> stored, List<T> recomputed, Function<T, UUID> id, Function<T, Long> count,
+            Map<UUID, Long> pending, Counter driftCounter, String type) {
+
+        Map<UUID, Long> storedCounts = new TreeMap<>();
+        for (T row : stored) {
+            storedCounts.put(id.apply(row), count.apply(row));
+        }
+
+        Map<UUID, Long> corrections = new TreeMap<>();
+        for (T row : recomputed) {
+            UUID rowId = id.apply(row);
+            Long actual = count.apply(row);
+            Long current = storedCounts.get(rowId);
+            if (current == null || current.equals(actual) || pending.containsKey(rowId)) {
+                continue;
+            }
+
+            log.info("{} {} published post count drifted: stored {}, recomputed {}", type, rowId, current, actual);
+            driftCounter.increment(Math.abs(actual - current));
+            corrections.put(rowId, actual);
+        }
+        return corrections;
+    }
+
+    //數量寫入之後（已 commit）才清除列表快取並遞增版本，其他請求不會在寫入前把舊數量重新放回快取
+    private void countsChanged() {
+        for (String cacheName : List.of(CacheConfig.CATEGORIES, CacheConfig.TAGS)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.invalidate();
+            }
+        }
+        taxonomyVersion.increment();
+    }
+}
@@ -0,0 +1,41 @@
+package com.practice.demo.services;
+
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.events.PostEvent;
+import com.practice.demo.events.PostEventListener;
+import com.practice.demo.events.PostState;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已發布文章列表（GET /posts）的版本號，用於產生 ETag，不需要每次請求都對符合條件的文章做 COUNT / MAX(updated_at)。
+ * 異動前或異動後是已發布的文章（新增、更新、發布、取消發布、刪除）由文章事件遞增版本，所有篩選條件與分頁共用同一個版本。
+ * 與 TaxonomyVersion 相同：ETag 帶有啟動時間，只反映這個 JVM 中的寫入；事件在 commit 之後送達，版本最多延遲事件的 linger。
+ */
+@Component
+public class PublishedPostsVersion implements PostEventListener {
+
+    private final long bootId = System.currentTimeMillis();
+
+    private final AtomicLong version = new AtomicLong();
+
+    public String getETag() {
+        return "\"p-" + bootId + "-" + version.get() + "\"";
+    }
+
+    @Override
+    public void onPostEvents(List<PostEvent> events) {
+        for (PostEvent event : events) {
+            if (isPublished(event.before()) || isPublished(event.after())) {
+                version.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private static boolean isPublished(PostState state) {
+        return state != null && state.status() == PostStatus.PUBLISHED;
+    }
+}
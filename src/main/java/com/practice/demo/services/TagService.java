@@ -15,9 +15,14 @@ public interface TagService {
 
     void deleteTag(UUID id);
 
-    Tag getTagById(UUID id);
+    TagDto getTagById(UUID id);
+
+    boolean existsById(UUID id);
 
     List<Tag> getTagsByIds(Set<UUID> ids);
 
+    //找不到的 id 不會拋出例外，由呼叫端逐筆判斷（批次匯入）
+    List<Tag> findTagsByIds(Set<UUID> ids);
+
 
 }
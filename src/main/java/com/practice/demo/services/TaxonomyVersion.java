@@ -0,0 +1,50 @@
+package com.practice.demo.services;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分類與標籤列表的版本號，用於產生 /categories、/tags 的 ETag 與 Last-Modified。
+ * 只要分類、標籤或會影響文章數的文章異動，就在交易 commit 之後遞增版本。
+ * ETag 帶有啟動時間，重新啟動後版本號歸零也不會與舊的 ETag 相同。
+ */
+@Component
+public class TaxonomyVersion {
+
+    private final long bootId = System.currentTimeMillis();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Instant lastModified = Instant.now();
+
+    public String getETag() {
+        return "\"t-" + bootId + "-" + version.get() + "\"";
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    //在交易中呼叫時延後到 commit 之後才遞增，避免其他請求在 commit 前用新版本號快取到舊資料
+    public void increment() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump();
+                }
+            });
+        } else {
+            bump();
+        }
+    }
+
+    private void bump() {
+        lastModified = Instant.now();
+        version.incrementAndGet();
+    }
+}
@@ -1,5 +1,6 @@
 package com.practice.demo.services;
 
+import com.practice.demo.domain.dtos.AuthorDto;
 import com.practice.demo.domain.entities.User;
 
 import java.util.UUID;
@@ -8,5 +9,7 @@ public interface UserService {
 
     User getUserById(UUID id);
 
+    AuthorDto getAuthorById(UUID id);
+
 
 }
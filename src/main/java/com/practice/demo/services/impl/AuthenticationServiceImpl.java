@@ -2,23 +2,43 @@ package com.practice.demo.services.impl;
 
 import com.practice.demo.repositories.UserRepository;
 import com.practice.demo.domain.entities.User;
+import com.practice.demo.security.BlogUserDetails;
+import com.practice.demo.security.JwtKeyRing;
+import com.practice.demo.security.PasswordHashingExecutor;
+import com.practice.demo.security.RefreshTokenStore;
+import com.practice.demo.security.TokenRevocationList;
 import com.practice.demo.services.AuthenticationService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 
 //整體運作流程（在網頁專案中）
@@ -41,51 +61,177 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     private final UserRepository userRepository;
 
-    @Value("${jwt.secret}")
-    private String secretkey;
+    private final JwtKeyRing jwtKeyRing;
 
-    private final Long jwtExpiryMs =  86400000L;
+    //密碼比對與雜湊都在這個執行緒池執行，不佔用請求執行緒
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final PasswordEncoder passwordEncoder;
+
+    //只記錄 access token（有效期限短），已使用的 refresh token 記錄在資料表
+    private final TokenRevocationList tokenRevocationList;
+
+    private final RefreshTokenStore refreshTokenStore;
+
+    //access token 有效期限短，過期後用 refresh token 換新的，登出時撤銷
+    @Value("${blog.auth.access-token-ttl:15m}")
+    private Duration accessTokenTtl;
+
+    @Value("${blog.auth.refresh-token-ttl:14d}")
+    private Duration refreshTokenTtl;
+
+    //JWT 內的使用者資訊，驗證 Token 時直接由這些 claims 建立 BlogUserDetails，不需要查詢 users 資料表
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_NAME = "name";
+    private static final String CLAIM_ROLES = "roles";
+
+    //區分 access token 與 refresh token，refresh token 不能用來存取 API
+    private static final String CLAIM_TYPE = "typ";
+    private static final String TYPE_REFRESH = "refresh";
 
 
     @Override
-    public UserDetails authenticate(String email, String password) {
-        authenticationManager.authenticate(
+    public CompletableFuture<UserDetails> authenticate(String email, String password) {
+        //principal 就是 DaoAuthenticationProvider 載入的 UserDetails，不需要再查一次資料庫
+        return passwordHashingExecutor.submit(() -> (UserDetails) authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(email, password)
-        );
-
-        return userDetailsService.loadUserByUsername(email);
+        ).getPrincipal());
     }
 
     @Override
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims =new HashMap<>();
+        if(userDetails instanceof BlogUserDetails blogUserDetails){
+            claims.put(CLAIM_USER_ID, blogUserDetails.getId().toString());
+            claims.put(CLAIM_NAME, blogUserDetails.getName());
+        }
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+
+        return this.buildToken(claims, userDetails.getUsername(), accessTokenTtl);
+    }
+
+    @Override
+    public AuthTokens issueTokens(UserDetails userDetails) {
+        //refresh token 只帶 email，換發時會重新載入使用者
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_TYPE, TYPE_REFRESH);
+
+        return new AuthTokens(
+                userDetails,
+                this.generateToken(userDetails),
+                this.buildToken(claims, userDetails.getUsername(), refreshTokenTtl),
+                accessTokenTtl.toSeconds()
+        );
+    }
+
+    @Override
+    public AuthTokens refresh(String refreshToken) {
+        Claims claims;
+        try {
+            claims = jwtKeyRing.parseClaims(refreshToken);
+        } catch (JwtException | IllegalArgumentException ex) {
+            throw new BadCredentialsException("Invalid refresh token", ex);
+        }
+        if(!TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class)) || claims.getId() == null){
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+
+        //refresh token 只能使用一次：先標記為已使用再換發，同一個 Token 再次（或同時）換發時寫入會違反主鍵
+        //改用 used_refresh_tokens 之前撤銷的 refresh token 仍在 revoked_tokens，到期前繼續拒絕
+        UUID jti = UUID.fromString(claims.getId());
+        if(tokenRevocationList.isRevoked(jti)){
+            throw new BadCredentialsException("Refresh token has been revoked");
+        }
+        try {
+            refreshTokenStore.markUsed(jti, this.toLocalDateTime(claims.getExpiration()));
+        } catch (DataIntegrityViolationException ex) {
+            throw new BadCredentialsException("Refresh token has been revoked", ex);
+        }
+
+        return this.issueTokens(userDetailsService.loadUserByUsername(claims.getSubject()));
+    }
+
+    @Override
+    public void logout(String accessToken, String refreshToken) {
+        for(String token : new String[]{accessToken, refreshToken}){
+            if(token == null){
+                continue;
+            }
+
+            try {
+                Claims claims = jwtKeyRing.parseClaims(token);
+                if(claims.getId() == null){
+                    continue;
+                }
+
+                UUID jti = UUID.fromString(claims.getId());
+                LocalDateTime expiresAt = this.toLocalDateTime(claims.getExpiration());
+                if(TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class))){
+                    refreshTokenStore.markUsed(jti, expiresAt);
+                } else if(!tokenRevocationList.isRevoked(jti)){
+                    tokenRevocationList.revoke(jti, expiresAt);
+                }
+            } catch (JwtException | IllegalArgumentException | DataIntegrityViolationException ex) {
+                //無效、已過期或已撤銷的 Token 不需要再處理
+            }
+        }
+    }
+
+    private String buildToken(Map<String, Object> claims, String subject, Duration ttl){
+        long now = System.currentTimeMillis();
+        JwtKeyRing.SigningKey signingKey = jwtKeyRing.currentSigningKey();
+
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.id())
                 .setClaims(claims)
-                .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpiryMs))
-                .signWith(this.getSignKey(), SignatureAlgorithm.HS256)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(subject)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + ttl.toMillis()))
+                .signWith(signingKey.key(), SignatureAlgorithm.HS256)
                 .compact();
+    }
 
+    private LocalDateTime toLocalDateTime(Date date){
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
     }
 
     @Override
     public UserDetails validateToken(String token) {
-        String username = this.extractUsername(token);
+        Claims claims = jwtKeyRing.parseClaims(token);
+
+        if(TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class))){
+            throw new JwtException("Refresh token cannot be used to access the API");
+        }
+        //只查記憶體中的撤銷清單；舊版 Token 沒有 jti，無法撤銷，會在原本的期限過期
+        if(claims.getId() != null && tokenRevocationList.isRevoked(UUID.fromString(claims.getId()))){
+            throw new JwtException("Token has been revoked");
+        }
 
-        return userDetailsService.loadUserByUsername(username);
+        //舊版 Token 沒有 uid claim，只能用 email 查詢資料庫，等舊 Token 過期後就不會再走這條路徑
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        if(userId == null){
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+
+        return new BlogUserDetails(
+                UUID.fromString(userId),
+                claims.getSubject(),
+                claims.get(CLAIM_NAME, String.class),
+                this.extractAuthorities(claims)
+        );
     }
 
     @Override
-    public UserDetails register(String email, String rawPassword, String name) {
-        if(userRepository.findByEmail(email).isPresent()){
-            throw new IllegalStateException("Email already in use");
-        }
+    public CompletableFuture<UserDetails> register(String email, String rawPassword, String name) {
+        return passwordHashingExecutor.submit(() -> this.createUser(email, rawPassword, name));
+    }
 
-        // 使用預設的 DelegatingPasswordEncoder 以符合 Spring Security 的 {id} 前綴格式
-        String encoded = org.springframework.security.crypto.factory.PasswordEncoderFactories
-                .createDelegatingPasswordEncoder()
-                .encode(rawPassword);
+    //只執行一次 INSERT，email / name 是否重複交給 users 資料表的 unique constraint 判斷，
+    //不會有「先查詢沒有重複、再寫入」之間兩個請求同時通過檢查的問題
+    private UserDetails createUser(String email, String rawPassword, String name) {
+        // 使用 SecurityConfig 設定的 DelegatingPasswordEncoder，雜湊帶有 {id} 前綴
+        String encoded = passwordEncoder.encode(rawPassword);
 
         User user = User.builder()
                 .email(email)
@@ -93,25 +239,50 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 .name(name)
                 .build();
 
-        userRepository.save(user);
-        return userDetailsService.loadUserByUsername(email);
+        try {
+            //立即 flush，讓違反 unique constraint 的錯誤在這裡丟出
+            User savedUser = userRepository.saveAndFlush(user);
+            return new BlogUserDetails(savedUser);
+        } catch (DataIntegrityViolationException ex) {
+            throw this.toDuplicateUserException(ex, email, name);
+        }
     }
 
-    private String extractUsername(String token){
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(this.getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    //只有 email / name 的 unique constraint 轉成 409（IllegalStateException），其他錯誤（NOT NULL、長度等）原樣丟出
+    private RuntimeException toDuplicateUserException(DataIntegrityViolationException ex, String email, String name) {
+        if(!(ex.getCause() instanceof ConstraintViolationException violation)
+                || violation.getKind() != ConstraintViolationException.ConstraintKind.UNIQUE){
+            return ex;
+        }
 
-        return claims.getSubject();
+        //H2 回報的是 constraint 對應的 index 名稱（例如 PUBLIC.UK_USERS_EMAIL_INDEX_4），以包含判斷
+        String constraint = Objects.requireNonNullElse(violation.getConstraintName(), "").toLowerCase(Locale.ROOT);
+        if(constraint.contains(User.EMAIL_CONSTRAINT)){
+            return new IllegalStateException("Email already in use");
+        }
+        if(constraint.contains(User.NAME_CONSTRAINT)){
+            return new IllegalStateException("Name already in use");
+        }
 
+        //指定名稱之前建立的資料表仍有 Hibernate 產生名稱的 unique constraint，多查一次判斷是哪一個欄位
+        if(userRepository.existsByEmail(email)){
+            return new IllegalStateException("Email already in use");
+        }
+        if(userRepository.existsByName(name)){
+            return new IllegalStateException("Name already in use");
+        }
+        return ex;
     }
 
-    private Key getSignKey(){
-        byte[] keyBytes = secretkey.getBytes();
+    private Collection<? extends GrantedAuthority> extractAuthorities(Claims claims){
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if(roles == null){
+            return List.of(new SimpleGrantedAuthority(BlogUserDetails.ROLE_USER));
+        }
 
-        return Keys.hmacShaKeyFor(keyBytes);
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .toList();
     }
 
 
@@ -1,19 +1,24 @@
 package com.practice.demo.services.impl;
 
+import com.practice.demo.Config.CacheConfig;
 import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.dtos.CreateCategoryRequest;
 import com.practice.demo.domain.entities.Category;
 import com.practice.demo.mappers.CategoryMapper;
 import com.practice.demo.repositories.CategoryRepository;
 import com.practice.demo.services.CategoryService;
+import com.practice.demo.services.TaxonomyVersion;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -24,17 +29,18 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryMapper categoryMapper;
 
+    private final TaxonomyVersion taxonomyVersion;
+
     @Override
+    @Cacheable(CacheConfig.CATEGORIES)
     public List<CategoryDto> listCategories() {
 
-        List<Category> categories = categoryRepository.findAllWithPostCount();
-
-
-        return categories.stream().map(categoryMapper :: toDto).toList();
+        return categoryRepository.findAllWithPostCount();
     }
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
     public CategoryDto createCategory(CreateCategoryRequest createCategoryRequest) {
 
         Category categoryToCreate = categoryMapper.toEntity(createCategoryRequest);
@@ -42,27 +48,50 @@ public class CategoryServiceImpl implements CategoryService {
         if(categoryRepository.existsByNameIgnoreCase(categoryToCreate.getName())){
             throw new IllegalArgumentException("Category already exist with name " + categoryToCreate.getName());
         }
-        return categoryMapper.toDto(categoryRepository.save(categoryToCreate));
+        CategoryDto createdCategory = categoryMapper.toDto(categoryRepository.save(categoryToCreate));
+
+        taxonomyVersion.increment();
+
+        return createdCategory;
     }
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.CATEGORY_BY_ID, key = "#id")
+    })
     public void deleteCategory(UUID id) {
-        Optional<Category> category = categoryRepository.findById(id);
 
-        if(category.isPresent() && category.get().getPosts().size() > 0){
+        if(categoryRepository.existsByIdAndPostsIsNotEmpty(id)){
             throw new IllegalArgumentException("Category has posts associated with it");
         }
 
         categoryRepository.deleteById(id);
 
+        taxonomyVersion.increment();
+
 
     }
 
+    //每次新增/更新文章都會呼叫以確認分類存在；快取 DTO 而不是 entity，entity 不能在不同的 persistence context 與執行緒之間共用
     @Override
-    public Category getCategoryById(UUID id) {
+    @Cacheable(CacheConfig.CATEGORY_BY_ID)
+    public CategoryDto getCategoryById(UUID id) {
         return categoryRepository.findById(id)
+                .map(categoryMapper::toDto)
                 .orElseThrow(()->new EntityNotFoundException("Category not found with id " + id));
     }
 
+    @Override
+    public boolean existsById(UUID id) {
+        return categoryRepository.existsById(id);
+    }
+
+    @Override
+    public List<Category> findCategoriesByIds(Set<UUID> ids) {
+        return categoryRepository.findAllById(ids);
+    }
+
 
 }
@@ -1,26 +1,68 @@
 package com.practice.demo.services.impl;
 
+import com.practice.demo.Config.CacheConfig;
+import com.practice.demo.domain.CursorPage;
+import com.practice.demo.domain.PostCursor;
+import com.practice.demo.domain.PostImportItem;
+import com.practice.demo.domain.PostSearchCursor;
 import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.AuthorDto;
+import com.practice.demo.domain.dtos.CategoryDto;
 import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
 import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.PostImportResultDto;
+import com.practice.demo.domain.dtos.PostSearchResultDto;
+import com.practice.demo.domain.dtos.PostSuggestionDto;
+import com.practice.demo.domain.dtos.PostSummaryDto;
+import com.practice.demo.domain.dtos.TagDto;
 import com.practice.demo.domain.dtos.UpdatePostRequestDto;
 import com.practice.demo.domain.entities.Category;
 import com.practice.demo.domain.entities.Post;
 import com.practice.demo.domain.entities.Tag;
 import com.practice.demo.domain.entities.User;
+import com.practice.demo.domain.projections.PostSummaryView;
+import com.practice.demo.domain.projections.PostTagView;
+import com.practice.demo.domain.projections.PostVersionView;
+import com.practice.demo.events.PostEvent;
+import com.practice.demo.events.PostEventBus;
+import com.practice.demo.events.PostState;
 import com.practice.demo.mappers.PostMapper;
 import com.practice.demo.repositories.PostRepository;
+import com.practice.demo.repositories.PostRepositoryCustom;
+import com.practice.demo.repositories.PostRepositoryCustom.PostSearchHit;
+import com.practice.demo.repositories.PostSpecifications;
 import com.practice.demo.services.CategoryService;
+import com.practice.demo.services.PostSearchIndex;
 import com.practice.demo.services.PostService;
+import com.practice.demo.services.PostTextAnalyzer;
 import com.practice.demo.services.TagService;
+import com.practice.demo.services.UserService;
 
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.HtmlUtils;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -29,131 +71,594 @@ public class PostServiceImpl implements PostService {
     private final PostRepository postRepository;
     private final CategoryService categoryService;
     private final TagService tagService;
+    private final UserService userService;
 
     private final PostMapper postMapper;
 
-    private final static Integer WORDS_PER_MINUTE = 200;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Validator validator;
+
+    private final PostEventBus postEventBus;
+
+    private final PostSearchIndex postSearchIndex;
+
+    @Value("${blog.posts.page-size.default:20}")
+    private int defaultPageSize;
+
+    @Value("${blog.posts.page-size.max:100}")
+    private int maxPageSize;
+
+    @Value("${blog.posts.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    @Value("${blog.posts.import.chunk-size:500}")
+    private int importChunkSize;
+
+    private static final int MAX_SEARCH_QUERY_LENGTH = 200;
 
 
     @Override
     @Transactional(readOnly = true)
-    public List<PostDto> getAllPosts(UUID categoryId, UUID tagId) {
+    public CursorPage<PostSummaryDto> getAllPosts(UUID categoryId, UUID tagId, String cursor, Integer size) {
+
+        Window<PostSummaryView> posts = this.findPostSummaries(
+                PostSpecifications.filter(PostStatus.PUBLISHED, null, categoryId, tagId),
+                cursor,
+                size
+        );
+
+        //只有查無結果時才確認 category / tag 是否存在，存在就回傳空列表，不存在則回傳 404
+        if(posts.isEmpty()){
+            if(categoryId != null && !categoryService.existsById(categoryId)){
+                throw new EntityNotFoundException("Category not found with id " + categoryId);
+            }
+            if(tagId != null && !tagService.existsById(tagId)){
+                throw new EntityNotFoundException("Tag not found with id " + tagId);
+            }
+        }
+
+        return this.toPage(posts);
+
+    }
+
+    //搜尋只決定這一頁的文章與順序，列表欄位與標籤再各用一次 IN 查詢補上（與一般列表相同）
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<PostSearchResultDto> searchPosts(String query, String cursor, Integer size) {
+        String text = this.requireSearchQuery(query);
+
+        int limit = this.resolveLimit(size);
+        //多查一筆判斷是否還有下一頁
+        List<PostSearchHit> hits = postRepository.searchPublished(text, PostSearchCursor.decode(cursor), limit + 1);
+        boolean hasNext = hits.size() > limit;
+        if(hasNext){
+            hits = hits.subList(0, limit);
+        }
 
-        List<Post> posts = new ArrayList<>();
+        List<UUID> postIds = hits.stream().map(PostSearchHit::id).toList();
+        Map<UUID, PostSummaryView> summaries = new HashMap<>();
+        if(!postIds.isEmpty()){
+            postRepository.findBy(PostSpecifications.idIn(postIds), q -> q.as(PostSummaryView.class).all())
+                    .forEach(view -> summaries.put(view.getId(), view));
+        }
+        Map<UUID, Set<TagDto>> tagsByPostId = this.findTagsByPostIds(postIds);
+
+        List<PostSearchResultDto> items = hits.stream()
+                .filter(hit -> summaries.containsKey(hit.id()))
+                .map(hit -> PostSearchResultDto.builder()
+                        .post(postMapper.toSummaryDto(summaries.get(hit.id()), tagsByPostId.getOrDefault(hit.id(), new HashSet<>())))
+                        .highlightedTitle(this.toHighlightHtml(hit.title(), false))
+                        .snippet(this.toHighlightHtml(hit.snippet(), true))
+                        .score(hit.rank())
+                        .build())
+                .toList();
+
+        String nextCursor = null;
+        if(hasNext){
+            PostSearchHit last = hits.getLast();
+            nextCursor = PostSearchCursor.encode(last.rank(), last.id());
+        }
 
-        if(categoryId != null && tagId!= null){
-            Category category = categoryService.getCategoryById(categoryId);
-            Tag tag = tagService.getTagById(tagId);
-            posts = postRepository.findAllByPostStatusAndCategoryAndTagsContaining(
-                    PostStatus.PUBLISHED,
-                    category,
-                    tag
-            );
+        return new CursorPage<>(items, nextCursor);
+    }
 
+    //只查記憶體中的索引，不開啟交易也不存取資料庫
+    //不 strip：結尾的空白代表最後一個字已經輸入完成，不以前綴比對
+    @Override
+    public List<PostSuggestionDto> suggestPosts(String query, Integer size) {
+        this.requireSearchQuery(query);
+
+        return postSearchIndex.search(query, this.resolveLimit(size)).stream()
+                .map(hit -> PostSuggestionDto.builder()
+                        .id(hit.postId())
+                        .title(hit.title())
+                        .score(hit.score())
+                        .build())
+                .toList();
+    }
+
+    private String requireSearchQuery(String query){
+        String text = query == null ? "" : query.strip();
+        if(text.isEmpty()){
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if(text.length() > MAX_SEARCH_QUERY_LENGTH){
+            throw new IllegalArgumentException("Search query must be at most " + MAX_SEARCH_QUERY_LENGTH + " characters");
         }
+        return text;
+    }
 
-        if(categoryId != null){
-            Category category = categoryService.getCategoryById(categoryId);
-            posts = postRepository.findAllByPostStatusAndCategory(
-                    PostStatus.PUBLISHED,
-                    category
-            );
+    //內容片段可能包含文章的 HTML 標籤，先去掉再 escape，最後才把標記換成 <mark>，輸出中只會有 <mark> 這個標籤
+    private String toHighlightHtml(String highlighted, boolean stripTags){
+        if(highlighted == null){
+            return null;
         }
 
-        if(tagId != null){
-            Tag tag = tagService.getTagById(tagId);
-            posts = postRepository.findAllByPostStatusAndTagsContaining(
-                    PostStatus.PUBLISHED,
-                    tag
-            );
+        String text = stripTags ? PostTextAnalyzer.plainText(highlighted) : highlighted;
+
+        return HtmlUtils.htmlEscape(text)
+                .replace(PostRepositoryCustom.HIGHLIGHT_START, "<mark>")
+                .replace(PostRepositoryCustom.HIGHLIGHT_END, "</mark>");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<PostSummaryDto> getDraftPosts(UUID authorId, String cursor, Integer size) {
+        Window<PostSummaryView> posts = this.findPostSummaries(
+                PostSpecifications.filter(PostStatus.DRAFT, authorId, null, null),
+                cursor,
+                size
+        );
+
+        return this.toPage(posts);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PostVersionView getPostVersion(UUID id) {
+        return postRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Post not found with ID "+id));
+    }
+
+    //所有篩選條件組合都是同一個 keyset 分頁查詢（seek 條件 + LIMIT），只 SELECT PostSummaryView 的欄位
+    private Window<PostSummaryView> findPostSummaries(Specification<Post> filter, String cursor, Integer size){
+        ScrollPosition position = PostCursor.decode(cursor);
+        int limit = this.resolveLimit(size);
+
+        return postRepository.findBy(filter, query -> query
+                .as(PostSummaryView.class)
+                .sortBy(PostCursor.SORT)
+                .limit(limit)
+                .scroll(position));
+    }
+
+    //未指定 size 時使用預設值，超過上限時以上限為準
+    private int resolveLimit(Integer size){
+        if(size == null){
+            return defaultPageSize;
+        }
+        if(size < 1){
+            throw new IllegalArgumentException("Page size must be at least 1");
         }
 
+        return Math.min(size, maxPageSize);
+    }
+
+    //列表只查 PostSummaryView（不含 content），標籤再用一次 IN 查詢補上
+    private CursorPage<PostSummaryDto> toPage(Window<PostSummaryView> posts){
+        Map<UUID, Set<TagDto>> tagsByPostId = this.findTagsByPostIds(
+                posts.stream().map(PostSummaryView::getId).toList()
+        );
+
+        List<PostSummaryDto> items = posts.stream()
+                .map(post -> postMapper.toSummaryDto(post, tagsByPostId.getOrDefault(post.getId(), new HashSet<>())))
+                .toList();
+
+        String nextCursor = null;
+        if(posts.hasNext() && !posts.isEmpty()){
+            PostSummaryView last = posts.getContent().getLast();
+            nextCursor = PostCursor.encode(last.getCreatedAt(), last.getId());
+        }
 
-        posts = postRepository.findAllByPostStatus(PostStatus.PUBLISHED);
+        return new CursorPage<>(items, nextCursor);
+    }
 
-        return posts.stream().map(postMapper :: toDto).toList();
+    private Map<UUID, Set<TagDto>> findTagsByPostIds(List<UUID> postIds){
+        Map<UUID, Set<TagDto>> tagsByPostId = new HashMap<>();
+        if(!postIds.isEmpty()){
+            for(PostTagView postTag : postRepository.findTagsByPostIds(postIds)){
+                tagsByPostId.computeIfAbsent(postTag.postId(), postId -> new HashSet<>())
+                        .add(TagDto.builder().id(postTag.tagId()).name(postTag.tagName()).build());
+            }
+        }
 
+        return tagsByPostId;
     }
 
+    //用資料庫游標逐批讀取文章，每批查一次 tags、交給 consumer 寫出後清空 persistence context，
+    //記憶體用量只跟 fetch size 有關，與文章總數無關
     @Override
-    public List<PostDto> getDraftPosts(User user) {
-        List<Post> posts = postRepository.findAllByPostStatusAndAuthor(PostStatus.DRAFT, user);
+    @Transactional(readOnly = true)
+    public void exportPosts(UUID requesterId, PostStatus postStatus, UUID categoryId, LocalDateTime since, Consumer<PostDto> consumer) {
+        //未指定狀態時匯出已發布的文章；草稿只能匯出自己的
+        PostStatus status = postStatus == null ? PostStatus.PUBLISHED : postStatus;
+        UUID authorId = status == PostStatus.DRAFT ? requesterId : null;
+
+        Specification<Post> filter = PostSpecifications.filter(status, authorId, categoryId, null)
+                .and(PostSpecifications.updatedSince(since));
+
+        List<Post> batch = new ArrayList<>(exportFetchSize);
+        try(Stream<Post> posts = postRepository.streamForExport(filter, exportFetchSize)){
+            Iterator<Post> iterator = posts.iterator();
+            while(iterator.hasNext()){
+                batch.add(iterator.next());
+                if(batch.size() == exportFetchSize){
+                    this.exportBatch(batch, consumer);
+                }
+            }
+            this.exportBatch(batch, consumer);
+        }
+    }
+
+    private void exportBatch(List<Post> batch, Consumer<PostDto> consumer){
+        if(batch.isEmpty()){
+            return;
+        }
+
+        Map<UUID, Set<TagDto>> tagsByPostId = this.findTagsByPostIds(batch.stream().map(Post::getId).toList());
+        for(Post post : batch){
+            consumer.accept(postMapper.toDto(post, tagsByPostId.getOrDefault(post.getId(), new HashSet<>())));
+        }
 
-        return posts.stream().map(postMapper :: toDto).toList();
+        //唯讀交易，直接清空 persistence context 讓這批 entity 可以被回收
+        batch.clear();
+        entityManager.clear();
     }
 
+    //分類與標籤的文章數由 PublishedPostCounters 從文章事件累計後更新，文章的寫入不需要清除分類與標籤列表的快取
     @Override
     @Transactional
-    public PostDto createPost(User user, CreatePostRequestDto createPostRequestDto) {
-        Post newPost = new Post();
-        newPost.setTitle(createPostRequestDto.getTitle());
-        newPost.setContent(createPostRequestDto.getContent());
-        newPost.setAuthor(user);
-        newPost.setPostStatus(createPostRequestDto.getStatus());
-        newPost.setReadingTime(this.calculateReadingTime(createPostRequestDto.getContent()));
-
-        Category category = categoryService.getCategoryById(createPostRequestDto.getCategoryId());
-        newPost.setCategory(category);
+    public PostDto createPost(UUID authorId, CreatePostRequestDto createPostRequestDto) {
+        //作者與分類是否存在由快取確認（找不到時拋出 EntityNotFoundException），文章只需要外鍵，
+        //用 getReference 取得這個交易的 proxy，回應中的作者與分類使用快取的 DTO，不查詢 users / categories
+        AuthorDto author = userService.getAuthorById(authorId);
+        CategoryDto category = categoryService.getCategoryById(createPostRequestDto.getCategoryId());
 
         Set<UUID> tagIds = createPostRequestDto.getTagsId();
         List<Tag> tags = tagService.getTagsByIds(tagIds);
-        newPost.setTags(new HashSet<>(tags));
+
+        Post newPost = this.newPost(
+                entityManager.getReference(User.class, authorId),
+                createPostRequestDto,
+                entityManager.getReference(Category.class, category.getId()),
+                new HashSet<>(tags));
 
         Post savedPost =  postRepository.save(newPost);
 
-        return postMapper.toDto(savedPost);
+        postEventBus.publish(PostEvent.created(savedPost));
+
+        return postMapper.toDto(savedPost, author, category);
 
     }
 
+    //不加 @Transactional：每 importChunkSize 筆用 transactionTemplate 各自提交，後面的批次失敗不會讓前面已匯入的文章回滾
+    @Override
+    public PostImportResultDto importPosts(UUID authorId, Iterator<PostImportItem> items) {
+        //作者不存在時整個匯入失敗，不逐筆記錄
+        userService.getAuthorById(authorId);
+
+        List<PostImportResultDto.Failure> failures = new ArrayList<>();
+        List<PostImportItem> chunk = new ArrayList<>(importChunkSize);
+        int imported = 0;
+
+        while(items.hasNext()){
+            chunk.add(items.next());
+            if(chunk.size() >= importChunkSize){
+                imported += this.importChunk(authorId, chunk, failures);
+                chunk.clear();
+            }
+        }
+        imported += this.importChunk(authorId, chunk, failures);
 
+        return PostImportResultDto.builder()
+                .imported(imported)
+                .failed(failures.size())
+                .failures(failures)
+                .build();
+    }
 
-    private Integer calculateReadingTime(String content){
-        if(content == null || content.isEmpty()){
+    //外鍵參照的資料不存在的 SQLState：PostgreSQL 為 23503，H2 為 23506
+    private static final Set<String> FOREIGN_KEY_VIOLATIONS = Set.of("23503", "23506");
+
+    private record ImportCandidate(PostImportItem item, Category category, Set<Tag> tags) {
+    }
+
+    //一批只查一次分類、標籤與已存在的標題，不合格的項目記為失敗，其餘在同一個交易內以 JDBC batch 寫入
+    private int importChunk(UUID authorId, List<PostImportItem> chunk, List<PostImportResultDto.Failure> failures){
+        List<CreatePostRequestDto> requests = new ArrayList<>();
+        List<PostImportItem> valid = new ArrayList<>();
+        for(PostImportItem item : chunk){
+            if(item.error() != null){
+                failures.add(this.importFailure(item, item.error()));
+                continue;
+            }
+
+            Set<ConstraintViolation<CreatePostRequestDto>> violations = validator.validate(item.request());
+            if(!violations.isEmpty()){
+                String message = violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                failures.add(this.importFailure(item, message));
+                continue;
+            }
+
+            requests.add(item.request());
+            valid.add(item);
+        }
+
+        if(valid.isEmpty()){
             return 0;
         }
 
-        int wordCount = content.trim().split("\\s+").length;
+        Map<UUID, Category> categories = categoryService.findCategoriesByIds(
+                        requests.stream().map(CreatePostRequestDto::getCategoryId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Category::getId, category -> category));
+        Map<UUID, Tag> tags = tagService.findTagsByIds(
+                        requests.stream().flatMap(request -> request.getTagsId().stream()).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Tag::getId, tag -> tag));
+        Set<String> existingTitles = postRepository.findExistingTitles(
+                requests.stream().map(CreatePostRequestDto::getTitle).collect(Collectors.toSet()));
+
+        Set<String> seenTitles = new HashSet<>();
+        List<ImportCandidate> candidates = new ArrayList<>();
+        for(PostImportItem item : valid){
+            CreatePostRequestDto request = item.request();
+
+            Category category = categories.get(request.getCategoryId());
+            if(category == null){
+                failures.add(this.importFailure(item, "Category not found with id " + request.getCategoryId()));
+                continue;
+            }
+
+            Optional<UUID> missingTagId = request.getTagsId().stream().filter(id -> !tags.containsKey(id)).findFirst();
+            if(missingTagId.isPresent()){
+                failures.add(this.importFailure(item, "Tag not found with id " + missingTagId.get()));
+                continue;
+            }
+
+            //同一次匯入中重複的標題只有第一筆會寫入
+            if(existingTitles.contains(request.getTitle()) || !seenTitles.add(request.getTitle())){
+                failures.add(this.importFailure(item, "Title already exists"));
+                continue;
+            }
+
+            Set<Tag> postTags = request.getTagsId().stream().map(tags::get).collect(Collectors.toSet());
+            candidates.add(new ImportCandidate(item, category, postTags));
+        }
 
-        return wordCount/WORDS_PER_MINUTE;
+        if(candidates.isEmpty()){
+            return 0;
+        }
+
+        int imported = 0;
+        try {
+            transactionTemplate.executeWithoutResult(status -> this.insertPosts(authorId, candidates));
+            imported = candidates.size();
+        } catch (DataIntegrityViolationException ex) {
+            //整批寫入失敗（例如檢查之後有其他請求建立了相同標題的文章，或刪除了分類/標籤）時逐筆重試，只有衝突的項目記為失敗
+            for(ImportCandidate candidate : candidates){
+                try {
+                    transactionTemplate.executeWithoutResult(status -> this.insertPosts(authorId, List.of(candidate)));
+                    imported++;
+                } catch (DataIntegrityViolationException itemEx) {
+                    failures.add(this.importFailure(candidate.item(), this.importConstraintMessage(itemEx)));
+                }
+            }
+        }
+
+        return imported;
+    }
+
+    //每次都建立新的 Post：交易回滾後，已 persist 過的 entity 帶有 id，不能再用來重試
+    private void insertPosts(UUID authorId, List<ImportCandidate> candidates){
+        User author = entityManager.getReference(User.class, authorId);
+        List<Post> posts = candidates.stream()
+                .map(candidate -> this.newPost(author, candidate.item().request(), candidate.category(), new HashSet<>(candidate.tags())))
+                .toList();
+
+        postRepository.saveAll(posts);
+        posts.forEach(post -> postEventBus.publish(PostEvent.created(post)));
+        //flush 讓這批 posts 與 post_tags 的 INSERT 以 JDBC batch 送出，clear 後這批 entity 不再佔用記憶體
+        postRepository.flush();
+        entityManager.clear();
+    }
+
+    //寫入時違反的限制：posts 只有 title 是 unique，外鍵是分類、作者與 post_tags 的標籤
+    private String importConstraintMessage(DataIntegrityViolationException ex){
+        if(!(ex.getCause() instanceof ConstraintViolationException violation)){
+            return "Could not be saved: " + ex.getMostSpecificCause().getClass().getSimpleName();
+        }
+
+        if(violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE){
+            return "Title already exists";
+        }
+        if(FOREIGN_KEY_VIOLATIONS.contains(violation.getSQLState())){
+            return "Category, tag or author no longer exists";
+        }
+        return "Violates constraint " + Objects.requireNonNullElse(violation.getConstraintName(), violation.getSQLState());
+    }
+
+    private PostImportResultDto.Failure importFailure(PostImportItem item, String message){
+        String title = item.request() != null ? item.request().getTitle() : null;
+        return new PostImportResultDto.Failure(item.index(), title, message);
+    }
+
+    private Post newPost(User author, CreatePostRequestDto createPostRequestDto, Category category, Set<Tag> tags){
+        Post newPost = new Post();
+        newPost.setTitle(createPostRequestDto.getTitle());
+        this.setContent(newPost, createPostRequestDto.getContent());
+        newPost.setAuthor(author);
+        newPost.setPostStatus(createPostRequestDto.getStatus());
+        newPost.setCategory(category);
+        newPost.setTags(tags);
+        return newPost;
+    }
+
+    //content 與由它計算出的欄位一起更新，只掃描一次內容
+    private void setContent(Post post, String content){
+        PostTextAnalyzer.Result analysis = PostTextAnalyzer.analyze(content);
 
+        post.setContent(content);
+        post.setExcerpt(analysis.excerpt());
+        post.setReadingTime(analysis.readingTime());
+        post.setWordCount(analysis.wordCount());
+        post.setContentHash(analysis.contentHash());
     }
 
+
+
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.POST_BY_ID, key = "#id")
     public PostDto updatePost(UUID id, UpdatePostRequestDto updatePostRequestDto) {
 
-        Post existingPost = postRepository.findById(id)
+        Post existingPost = postRepository.findWithDetailsById(id)
             .orElseThrow(() -> new EntityNotFoundException("Post not found with ID "+id));
 
+        //version 不同代表讀取之後文章已被修改，整篇覆寫會蓋掉別人的變更
+        //讀取到 flush 之間的並行修改則由 UPDATE 的 version 條件擋下
+        if(!existingPost.getVersion().equals(updatePostRequestDto.getVersion())){
+            throw new ObjectOptimisticLockingFailureException(Post.class, id);
+        }
+
+        PostState before = PostState.of(existingPost);
+
         existingPost.setTitle(updatePostRequestDto.getTitle());
-        existingPost.setContent(updatePostRequestDto.getContent());
+        this.updateContent(existingPost, updatePostRequestDto.getContent());
         existingPost.setPostStatus(updatePostRequestDto.getStatus());
-        existingPost.setReadingTime(this.calculateReadingTime(updatePostRequestDto.getContent()));
+        this.updateCategory(existingPost, updatePostRequestDto.getCategoryId());
+        this.updateTags(existingPost, updatePostRequestDto.getTagsIds());
+
+        //立即 flush，回傳的 version 才是更新後的版本，版本衝突也在這裡拋出
+        Post savedPost = postRepository.saveAndFlush(existingPost);
 
-        Category oldCategory = existingPost.getCategory();
+        postEventBus.publish(PostEvent.updated(before, savedPost));
 
-        if(!existingPost.getCategory().equals(oldCategory)){
-            Category newCategory = categoryService.getCategoryById(updatePostRequestDto.getCategoryId());
-            existingPost.setCategory(newCategory);
+        return postMapper.toDto(savedPost);
+       
+        
+    }
+
+    //只套用有提供的欄位；managed entity 在 flush 時做 dirty checking，搭配 @DynamicUpdate，沒有變更的欄位不會出現在 UPDATE
+    //有 expectedVersion（If-Match）時與 updatePost 相同，在載入後比對版本，之後的並行修改由 UPDATE 的 version 條件擋下
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.POST_BY_ID, key = "#id")
+    public PostDto patchPost(UUID id, Long expectedVersion, PatchPostRequestDto patchPostRequestDto) {
+
+        Post existingPost = postRepository.findWithDetailsById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Post not found with ID "+id));
+
+        if(expectedVersion != null && !existingPost.getVersion().equals(expectedVersion)){
+            throw new ObjectOptimisticLockingFailureException(Post.class, id);
         }
 
-        Set<UUID> existingTagIds = existingPost.getTags().stream().map(Tag::getId).collect(Collectors.toSet());
-        Set<UUID> newTagIds = updatePostRequestDto.getTagsIds();
-        if(!existingTagIds.equals(newTagIds)){
-            List<Tag> newTags = tagService.getTagsByIds(newTagIds);
-            existingPost.setTags(new HashSet<>(newTags));
+        PostState before = PostState.of(existingPost);
+
+        boolean changed = false;
+
+        if(patchPostRequestDto.getTitle() != null && !patchPostRequestDto.getTitle().equals(existingPost.getTitle())){
+            existingPost.setTitle(patchPostRequestDto.getTitle());
+            changed = true;
+        }
+        if(patchPostRequestDto.getContent() != null){
+            changed |= this.updateContent(existingPost, patchPostRequestDto.getContent());
+        }
+        if(patchPostRequestDto.getStatus() != null && patchPostRequestDto.getStatus() != existingPost.getPostStatus()){
+            existingPost.setPostStatus(patchPostRequestDto.getStatus());
+            changed = true;
+        }
+        if(patchPostRequestDto.getCategoryId() != null){
+            changed |= this.updateCategory(existingPost, patchPostRequestDto.getCategoryId());
+        }
+        if(patchPostRequestDto.getTagsIds() != null){
+            changed |= this.updateTags(existingPost, patchPostRequestDto.getTagsIds());
         }
 
-        Post savedPost = postRepository.save(existingPost);
+        //flush 後 @PreUpdate 設定的 updatedAt 才會出現在回應中
+        Post savedPost = postRepository.saveAndFlush(existingPost);
+
+        if(changed){
+            postEventBus.publish(PostEvent.updated(before, savedPost));
+        }
 
         return postMapper.toDto(savedPost);
-       
-        
     }
 
+    //內容沒變時不重新分析，也不設定 content，UPDATE 不會重寫 content 欄位
+    //以內容本身比對（entity 已經載入 content）：64 位元的雜湊相同不代表內容相同，碰撞時會漏掉真正的修改
+    //內容相同但雜湊不符（分析結果是舊的或沒有）時重新分析，不算是變更
+    private boolean updateContent(Post post, String content){
+        if(content.equals(post.getContent())){
+            if(!PostTextAnalyzer.contentHash(content).equals(post.getContentHash())){
+                this.setContent(post, content);
+            }
+            return false;
+        }
+
+        this.setContent(post, content);
+        return true;
+    }
+
+    private boolean updateCategory(Post post, UUID categoryId){
+        if(categoryId.equals(post.getCategory().getId())){
+            return false;
+        }
+
+        post.setCategory(this.categoryReference(categoryId));
+        return true;
+    }
+
+    //分類是否存在由快取確認（找不到時拋出 EntityNotFoundException），文章只需要外鍵，用 getReference 取得這個交易的 proxy
+    private Category categoryReference(UUID categoryId){
+        categoryService.getCategoryById(categoryId);
+        return entityManager.getReference(Category.class, categoryId);
+    }
+
+    //直接增減原本的集合，Hibernate 只刪除/新增有變動的 post_tags 列；換成新的 Set 會刪除這篇文章所有的 post_tags 再全部重新新增
+    private boolean updateTags(Post post, Set<UUID> tagIds){
+        Set<UUID> existingTagIds = post.getTags().stream().map(Tag::getId).collect(Collectors.toSet());
+        if(existingTagIds.equals(tagIds)){
+            return false;
+        }
+
+        post.getTags().removeIf(tag -> !tagIds.contains(tag.getId()));
+
+        Set<UUID> addedTagIds = tagIds.stream()
+                .filter(tagId -> !existingTagIds.contains(tagId))
+                .collect(Collectors.toSet());
+        if(!addedTagIds.isEmpty()){
+            post.getTags().addAll(tagService.getTagsByIds(addedTagIds));
+        }
+
+        //只改 post_tags 時 posts 不會有 UPDATE，@PreUpdate 不會觸發，手動更新 updatedAt 讓 ETag 改變
+        post.setUpdatedAt(LocalDateTime.now());
+        return true;
+    }
+
+    //sync = true 讓同一篇文章同時只有一個請求載入，其他請求等待結果，並記錄載入時間（cache.load.duration）
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.POST_BY_ID, sync = true)
     public PostDto getPost(UUID id) {
-        Post post = postRepository.findById(id)
+        Post post = postRepository.findWithDetailsById(id)
         .orElseThrow(() -> new EntityNotFoundException("Post not found with ID "+id));
 
         return postMapper.toDto(post);
@@ -161,10 +666,17 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.POST_BY_ID, key = "#id")
     public void deletePost(UUID id) {
         Post post = postRepository.findById(id)
         .orElseThrow(() -> new EntityNotFoundException("Post not found with ID "+id));
 
+        //刪除前先取得狀態（分類、標籤），事件的消費者需要知道刪除的是哪些分類與標籤下的文章
+        PostEvent event = PostEvent.deleted(post);
+
         postRepository.delete(post);
+
+        postEventBus.publish(event);
     }
 }
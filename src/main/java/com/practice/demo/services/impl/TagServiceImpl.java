@@ -1,12 +1,18 @@
 package com.practice.demo.services.impl;
 
+import com.practice.demo.Config.CacheConfig;
 import com.practice.demo.domain.dtos.TagDto;
 import com.practice.demo.domain.entities.Tag;
 import com.practice.demo.mappers.TagMapper;
 import com.practice.demo.repositories.TagRepository;
+import com.practice.demo.repositories.TagRepositoryCustom;
 import com.practice.demo.services.TagService;
+import com.practice.demo.services.TaxonomyVersion;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,45 +27,39 @@ public class TagServiceImpl implements TagService {
 
     private final TagMapper tagMapper;
 
+    private final TaxonomyVersion taxonomyVersion;
+
 
     @Override
+    @Cacheable(CacheConfig.TAGS)
     public List<TagDto> getTags() {
 
-        List<Tag> tags = tagRepository.finaAllWithPostCount();
-
-        return tags.stream().map(tagMapper :: toTagResponse).toList();
+        return tagRepository.findAllWithPostCount();
     }
 
     @Transactional
     @Override
+    @CacheEvict(cacheNames = CacheConfig.TAGS, allEntries = true)
     public List<TagDto> createTags(Set<String> tagNames) {
 
-        List<Tag> existingTags = tagRepository.findByNameIn(tagNames);
-
-        Set<String> existingTagNames = existingTags
+        Set<String> names = Optional.ofNullable(tagNames).orElse(Set.of())
                 .stream()
-                .map(Tag :: getName)
+                .map(Tag::normalizeName)
+                .filter(name -> !name.isEmpty())
                 .collect(Collectors.toSet());
 
-        List<Tag> newTags = tagNames
-                .stream()
-                .filter(name -> !existingTagNames.contains(name))
-                .map(name -> Tag.builder()
-                        .name(name)
-                        .posts(new HashSet<>())
-                        .build()
+        if(names.isEmpty()){
+            throw new IllegalArgumentException("At least one tag name is required");
+        }
 
-                )
-                .toList();
+        //新增與查詢已存在的 tag 最多兩句 SQL，同時建立相同名稱不會違反 unique 限制
+        TagRepositoryCustom.TagUpsertResult result = tagRepository.upsertByNames(names);
 
-        List<Tag> savedTags = new ArrayList<>();
-        if(!newTags.isEmpty()){
-            savedTags = tagRepository.saveAll(newTags);
+        if(result.created() > 0){
+            taxonomyVersion.increment();
         }
 
-        savedTags.addAll(existingTags);
-
-        List<TagDto> resultList = savedTags
+        List<TagDto> resultList = result.tags()
                 .stream()
                 .map(tag -> tagMapper.toTagResponse(tag))
                 .toList();
@@ -69,28 +69,36 @@ public class TagServiceImpl implements TagService {
 
     @Transactional
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.TAGS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.TAG_BY_ID, key = "#id")
+    })
     public void deleteTag(UUID id) {
-        Optional<Tag> tag = tagRepository.findById(id);
-
-        if(tag.isEmpty()){
-            //throw new IllegalArgumentException("Tag with this name does not exist!");
-            return;
-        }
-
-        if(tag.get().getPosts().isEmpty()){
+        //tag 不存在時 deleteById 不會做任何事
+        if(tagRepository.existsByIdAndPostsIsNotEmpty(id)){
             throw new IllegalArgumentException("Can not delete tag with posts");
         }
 
         tagRepository.deleteById(id);
 
+        taxonomyVersion.increment();
+
     }
 
+    //快取 DTO，entity 不能在不同的 persistence context 與執行緒之間共用
     @Override
-    public Tag getTagById(UUID id) {
+    @Cacheable(CacheConfig.TAG_BY_ID)
+    public TagDto getTagById(UUID id) {
         return tagRepository.findById(id)
+                .map(tagMapper::toTagResponse)
                 .orElseThrow(()->new EntityNotFoundException("Tag not found with id " + id));
     }
 
+    @Override
+    public boolean existsById(UUID id) {
+        return tagRepository.existsById(id);
+    }
+
     @Override
     public List<Tag> getTagsByIds(Set<UUID> ids) {
 
@@ -101,4 +109,9 @@ public class TagServiceImpl implements TagService {
 
         return foundTags;
     }
+
+    @Override
+    public List<Tag> findTagsByIds(Set<UUID> ids) {
+        return tagRepository.findAllById(ids);
+    }
 }
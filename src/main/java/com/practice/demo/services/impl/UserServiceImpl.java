@@ -1,10 +1,14 @@
 package com.practice.demo.services.impl;
 
+import com.practice.demo.Config.CacheConfig;
+import com.practice.demo.domain.dtos.AuthorDto;
 import com.practice.demo.domain.entities.User;
+import com.practice.demo.mappers.AuthorMapper;
 import com.practice.demo.repositories.UserRepository;
 import com.practice.demo.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -16,6 +20,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
 
+    private final AuthorMapper authorMapper;
 
     @Override
     public User getUserById(UUID id) {
@@ -27,4 +32,12 @@ public class UserServiceImpl implements UserService {
 
         return user.get();
     }
+
+    //登入者本身不需要查資料庫（由 JWT claims 建立），建立文章時用來確認作者存在；
+    //快取 DTO 而不是 entity，快取時間很短，使用者資料的異動最多延遲一個 TTL
+    @Override
+    @Cacheable(cacheNames = CacheConfig.USER_BY_ID, sync = true)
+    public AuthorDto getAuthorById(UUID id) {
+        return authorMapper.toDto(this.getUserById(id));
+    }
 }
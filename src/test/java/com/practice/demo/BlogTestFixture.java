@@ -0,0 +1,40 @@
+package com.practice.demo;
+
+import com.practice.demo.domain.dtos.CreateCategoryRequest;
+import com.practice.demo.domain.entities.User;
+import com.practice.demo.repositories.UserRepository;
+import com.practice.demo.services.CategoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+//Spring 測試共用的資料：每個測試一個隨機的 suffix、一位作者與一個分類，名稱都帶有 suffix，不會與其他測試的資料衝突
+//子類別自行加上 @SpringBootTest 與 @ActiveProfiles，context 的快取與原本相同
+public abstract class BlogTestFixture {
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected CategoryService categoryService;
+
+    protected String suffix;
+
+    protected User author;
+
+    protected UUID categoryId;
+
+    @BeforeEach
+    void createAuthorAndCategory() {
+        suffix = UUID.randomUUID().toString().substring(0, 8);
+        author = userRepository.save(User.builder()
+                .email("author-" + suffix + "@example.com")
+                .password("password")
+                .name("author-" + suffix)
+                .posts(new ArrayList<>())
+                .build());
+        categoryId = categoryService.createCategory(new CreateCategoryRequest("category-" + suffix)).getId();
+    }
+}
@@ -0,0 +1,98 @@
+package com.practice.demo.benchmarks;
+
+import com.practice.demo.Config.JwtProperties;
+import com.practice.demo.security.JwtKeyRing;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 單一執行緒（每核心）的 JWT 簽發與驗證吞吐量。
+ * legacy* 是原本每次呼叫都重新產生 Key 與 JwtParser 的寫法，keyRing* 使用 JwtKeyRing 預先建好的金鑰與共用 parser。
+ *
+ * 執行方式：
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.practice.demo.benchmarks.JwtBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmark-256-bit-secret-key-at-least-32-bytes-long";
+
+    private final Map<String, Object> claims = Map.of(
+            "uid", "5f0c2d0e-6a47-4df4-9a4e-1a0c7b8f2e11",
+            "name", "benchmark",
+            "roles", List.of("ROLE_USER")
+    );
+
+    private JwtKeyRing keyRing;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        keyRing = new JwtKeyRing(new JwtProperties(SECRET, List.of()));
+        token = keyRingSign();
+    }
+
+    @Benchmark
+    public String legacySign() {
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject("benchmark@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 86400000L))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public String keyRingSign() {
+        JwtKeyRing.SigningKey signingKey = keyRing.currentSigningKey();
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.id())
+                .setClaims(claims)
+                .setSubject("benchmark@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 86400000L))
+                .signWith(signingKey.key(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public Claims legacyVerify() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Claims keyRingVerify() {
+        return keyRing.parseClaims(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.practice.demo.benchmarks;
+
+import com.practice.demo.security.TunedArgon2PasswordEncoder;
+import com.practice.demo.security.TunedBCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * 在目前的機器上找出最接近目標驗證時間的雜湊成本，輸出可以直接貼到 application.properties 的設定。
+ * 與 JMH benchmark 一樣只在 test 目錄，不會打包進應用程式。
+ *
+ * 執行方式（參數為目標毫秒數，預設 250）：
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.practice.demo.benchmarks.PasswordEncoderCalibration 250
+ */
+public final class PasswordEncoderCalibration {
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private static final int SAMPLES = 5;
+
+    private PasswordEncoderCalibration() {
+    }
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        System.out.println("Target verify latency: " + targetMillis + " ms");
+
+        //BCrypt 成本每加 1 時間加倍，取不超過目標的最大成本
+        int strength = calibrate(4, 31, targetMillis, TunedBCryptPasswordEncoder::new, "bcrypt strength=");
+        System.out.println("blog.security.password.bcrypt.strength=" + strength);
+
+        //Argon2id 固定 t=2、p=1，調整記憶體（KiB），每次加倍
+        int memoryKib = calibrate(10, 21, targetMillis,
+                exponent -> new TunedArgon2PasswordEncoder(1 << exponent, 2, 1), "argon2 memory-kib=2^");
+        System.out.println("blog.security.password.argon2.memory-kib=" + (1 << memoryKib));
+        System.out.println("blog.security.password.argon2.iterations=2");
+        System.out.println("blog.security.password.argon2.parallelism=1");
+    }
+
+    private static int calibrate(int from, int to, long targetMillis, IntFunction<PasswordEncoder> encoderFactory, String label) {
+        int best = from;
+        for (int cost = from; cost <= to; cost++) {
+            long millis = medianVerifyMillis(encoderFactory.apply(cost));
+            System.out.printf("  %s%d: %d ms%n", label, cost, millis);
+            if (millis > targetMillis) {
+                break;
+            }
+            best = cost;
+        }
+
+        return best;
+    }
+
+    private static long medianVerifyMillis(PasswordEncoder encoder) {
+        String encoded = encoder.encode(SAMPLE_PASSWORD);
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.matches(SAMPLE_PASSWORD, encoded);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+
+        return samples[SAMPLES / 2];
+    }
+}
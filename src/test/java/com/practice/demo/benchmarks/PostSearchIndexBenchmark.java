@@ -0,0 +1,148 @@
+package com.practice.demo.benchmarks;
+
+import com.practice.demo.services.InvertedIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InvertedIndex 在 100k 篇文章時的查詢延遲（取前 10 筆）。
+ * 文章為標題 6 個字、內容約 250 個字（20k 個字詞的 Zipf 分布，夾雜中文與 HTML 標籤）；
+ * 字詞由音節組成，前綴會展開成多個字詞。query 的種類：
+ * common（最常見的字詞，幾乎每篇都有）、rare、and（常見 + 中等的兩個字詞）、
+ * prefix2 / prefix3（邊輸入邊搜尋，最後一個字詞只輸入 2、3 個字母）、typing（兩個字詞加上前綴）、cjk（中文 bigram）。
+ * 另外 setUp 會印出建立索引的時間、posting list 的大小與快照的寫入 / 載入時間。
+ *
+ * 執行方式：
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.practice.demo.benchmarks.PostSearchIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(1)
+public class PostSearchIndexBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "su", "ta", "ri", "po", "de", "va", "zu", "che", "bri", "ston", "gar", "ul"};
+
+    private static final String CJK = "效能調校需要先量測再優化避免過早最佳化資料庫索引快取延遲吞吐量";
+
+    private static final int VOCABULARY = 20_000;
+
+    private static final int LIMIT = 10;
+
+    private static final Map<String, String> QUERIES = Map.of(
+            "common", word(0),
+            "rare", word(15_000),
+            "and", word(1) + " " + word(300),
+            "prefix2", word(40).substring(0, 2),
+            "prefix3", word(40).substring(0, 3),
+            "typing", word(2) + " " + word(50) + " " + word(700).substring(0, 3),
+            "cjk", "調校"
+    );
+
+    @Param("100000")
+    public int posts;
+
+    @Param({"common", "rare", "and", "prefix2", "prefix3", "typing", "cjk"})
+    public String query;
+
+    private InvertedIndex index;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        text = QUERIES.get(query);
+
+        //Zipf 分布：排名 r 的字詞出現的機率與 1/r 成正比，以累積分布抽樣
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        index = new InvertedIndex();
+        StringBuilder title = new StringBuilder();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < posts; i++) {
+            title.setLength(0);
+            content.setLength(0);
+            for (int w = 0; w < 6; w++) {
+                title.append(word(sample(random, cumulative, sum))).append(' ');
+            }
+            content.append("<p>");
+            for (int w = 0; w < 250; w++) {
+                content.append(word(sample(random, cumulative, sum))).append(w % 40 == 39 ? "</p><p>" : " ");
+                if (w % 50 == 0) {
+                    int from = random.nextInt(CJK.length() - 4);
+                    content.append(CJK, from, from + 4).append("，");
+                }
+            }
+            content.append("</p>");
+            index.put(new UUID(0, i), title.toString(), content.toString());
+        }
+        long built = System.nanoTime();
+
+        Path snapshot = Files.createTempFile("post-search-index", ".snapshot");
+        try {
+            index.writeTo(snapshot, LocalDateTime.now());
+            long written = System.nanoTime();
+            InvertedIndex.readFrom(snapshot);
+            long loaded = System.nanoTime();
+
+            System.out.printf("%n%d posts, %d terms, postings %d KB, snapshot %d KB; build %d ms, snapshot write %d ms, load %d ms%n",
+                    index.size(), index.termCount(), index.postingsBytes() / 1024, Files.size(snapshot) / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(built - start),
+                    TimeUnit.NANOSECONDS.toMillis(written - built),
+                    TimeUnit.NANOSECONDS.toMillis(loaded - written));
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Benchmark
+    public List<InvertedIndex.Hit> search() {
+        return index.search(text, LIMIT);
+    }
+
+    //排名 → 字詞：以 16 個音節表示排名（至少 2 個音節，第一個音節為最低位），排名除以 16 餘數相同的字詞有相同的前綴
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        int value = rank + SYLLABLES.length;
+        while (value > 0) {
+            word.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        }
+        return word.toString();
+    }
+
+    private static int sample(Random random, double[] cumulative, double sum) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PostSearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.practice.demo.benchmarks;
+
+import com.practice.demo.services.PostTextAnalyzer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 寫入文章時的內容分析成本，內容為中英混合、帶有 HTML 標籤的文字，大小 1 KB 到 1 MB。
+ * legacy 是原本 PostServiceImpl 的 calculateReadingTime（split）加 buildExcerpt（replaceAll）；
+ * analyzer 是 PostTextAnalyzer 單次掃描，另外還計算了內容雜湊。
+ *
+ * 執行方式：
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.practice.demo.benchmarks.PostTextBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PostTextBenchmark {
+
+    private static final String[] WORDS = {"spring", "boot", "cache", "index", "query", "latency", "throughput"};
+
+    private static final String CJK = "效能調校需要先量測再優化避免過早最佳化";
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(size + 64);
+        while (builder.length() < size) {
+            builder.append("<p>");
+            for (int i = 0; i < 20; i++) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            int start = random.nextInt(CJK.length() - 8);
+            builder.append(CJK, start, start + 8).append("，");
+            builder.append("</p>\n");
+        }
+        builder.setLength(size);
+        content = builder.toString();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        blackhole.consume(legacyReadingTime(content));
+        blackhole.consume(legacyExcerpt(content));
+    }
+
+    @Benchmark
+    public PostTextAnalyzer.Result analyzer() {
+        return PostTextAnalyzer.analyze(content);
+    }
+
+    private static int legacyReadingTime(String content) {
+        int wordCount = content.trim().split("\\s+").length;
+        return wordCount / PostTextAnalyzer.WORDS_PER_MINUTE;
+    }
+
+    private static String legacyExcerpt(String content) {
+        String plainText = content.replaceAll("<[^>]*>", " ").replaceAll("\\s+", " ").trim();
+        if (plainText.length() <= PostTextAnalyzer.EXCERPT_LENGTH) {
+            return plainText;
+        }
+        return plainText.substring(0, PostTextAnalyzer.EXCERPT_LENGTH) + "...";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PostTextBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
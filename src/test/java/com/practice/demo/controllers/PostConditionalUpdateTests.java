@@ -0,0 +1,168 @@
+package com.practice.demo.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
+import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.UpdatePostRequestDto;
+import com.practice.demo.security.BlogUserDetails;
+import com.practice.demo.services.AuthenticationService;
+import com.practice.demo.services.PostService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//整篇與部分更新的 If-Match：* 符合任何存在的文章，ETag 清單中任一個符合即可，弱 ETag 以強比較不會符合，格式錯誤回 400
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PostConditionalUpdateTests extends BlogTestFixture {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private PostService postService;
+
+    private String token;
+
+    private PostDto post;
+
+    @BeforeEach
+    void setUp() {
+        token = authenticationService.generateToken(new BlogUserDetails(author));
+        post = postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title("conditional " + suffix)
+                .content("content before the update")
+                .categoryId(categoryId)
+                .status(PostStatus.DRAFT)
+                .build());
+    }
+
+    @Test
+    void anyMatchesTheCurrentVersion() throws Exception {
+        this.update("*").andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, this.eTag(post.getVersion() + 1)));
+
+        this.update("*").andExpect(status().isOk());
+    }
+
+    @Test
+    void anyETagInTheListMatches() throws Exception {
+        String current = this.eTag(post.getVersion());
+
+        this.update("\"other\", " + current + ",\"12345\"").andExpect(status().isOk());
+
+        //已經更新過，原本的版本不再符合
+        this.update(current).andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void weakETagsNeverMatch() throws Exception {
+        String current = this.eTag(post.getVersion());
+
+        this.update("W/" + current).andExpect(status().isPreconditionFailed());
+        this.update("W/" + current + ", " + current).andExpect(status().isOk());
+
+        //If-None-Match 使用弱比較，弱 ETag 仍然可以得到 304
+        mockMvc.perform(get("/api/v1/posts/" + post.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/" + this.eTag(post.getVersion() + 1)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void malformedIfMatchIsRejected() throws Exception {
+        this.update("3").andExpect(status().isBadRequest());
+        this.update("\"3").andExpect(status().isBadRequest());
+        this.update(" , ").andExpect(status().isBadRequest());
+
+        assertEquals(post.getVersion(), postService.getPostVersion(post.getId()).version());
+    }
+
+    @Test
+    void missingPostIsNotFound() throws Exception {
+        mockMvc.perform(put("/api/v1/posts/" + UUID.randomUUID())
+                        .header("Authorization", "Bearer " + token)
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(this.request())))
+                .andExpect(status().isNotFound());
+    }
+
+    //部分更新帶 If-Match 時與整篇更新相同：過期的 ETag 回 412，不會蓋掉之後的修改
+    @Test
+    void patchWithStaleETagIsRejected() throws Exception {
+        String stale = this.eTag(post.getVersion());
+        this.update(stale).andExpect(status().isOk());
+
+        this.patchContent(stale, "patched with a stale ETag").andExpect(status().isPreconditionFailed());
+        assertEquals(post.getVersion() + 1, postService.getPostVersion(post.getId()).version());
+        assertNotEquals("patched with a stale ETag", postService.getPost(post.getId()).getContent());
+
+        this.patchContent(this.eTag(post.getVersion() + 1), "patched with the current ETag").andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, this.eTag(post.getVersion() + 2)));
+        assertEquals("patched with the current ETag", postService.getPost(post.getId()).getContent());
+
+        //沒有 If-Match 時不檢查版本
+        this.patchContent(null, "patched without If-Match").andExpect(status().isOk());
+        this.patchContent("W/" + this.eTag(post.getVersion() + 3), "patched with a weak ETag").andExpect(status().isPreconditionFailed());
+    }
+
+    private ResultActions patchContent(String ifMatch, String content) throws Exception {
+        MockHttpServletRequestBuilder request = patch("/api/v1/posts/" + post.getId())
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(PatchPostRequestDto.builder().content(content).build()));
+        if (ifMatch != null) {
+            request.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private ResultActions update(String ifMatch) throws Exception {
+        return mockMvc.perform(put("/api/v1/posts/" + post.getId())
+                .header("Authorization", "Bearer " + token)
+                .header(HttpHeaders.IF_MATCH, ifMatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(this.request())));
+    }
+
+    private UpdatePostRequestDto request() {
+        return UpdatePostRequestDto.builder()
+                .id(post.getId())
+                .title(post.getTitle())
+                .content("content after the update " + UUID.randomUUID())
+                .categoryId(post.getCategory().getId())
+                .status(PostStatus.DRAFT)
+                .build();
+    }
+
+    private String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+}
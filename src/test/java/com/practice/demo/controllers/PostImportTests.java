@@ -0,0 +1,210 @@
+package com.practice.demo.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CategoryDto;
+import com.practice.demo.domain.dtos.CreateCategoryRequest;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.entities.Category;
+import com.practice.demo.repositories.CategoryRepository;
+import com.practice.demo.repositories.PostRepository;
+import com.practice.demo.security.BlogUserDetails;
+import com.practice.demo.services.AuthenticationService;
+import com.practice.demo.services.CategoryService;
+import com.practice.demo.services.PostService;
+import com.practice.demo.services.TagService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//批次匯入：每 4 筆一批，驗證、讀取與寫入的失敗都以請求中的位置回報，其他項目照常匯入
+@SpringBootTest(properties = "blog.posts.import.chunk-size=4")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@MockitoSpyBean(types = CategoryService.class)
+class PostImportTests extends BlogTestFixture {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    private String token;
+
+    private UUID tagId;
+
+    @BeforeEach
+    void setUp() {
+        token = authenticationService.generateToken(new BlogUserDetails(author));
+        tagId = tagService.createTags(Set.of("import-" + suffix)).get(0).getId();
+    }
+
+    @Test
+    void jsonArrayImportsValidItemsAndReportsFailuresByIndex() throws Exception {
+        postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(this.title("existing"))
+                .content("already in the database")
+                .categoryId(categoryId)
+                .status(PostStatus.DRAFT)
+                .build());
+
+        List<Object> items = List.of(
+                this.item("first"),                                   //0
+                this.item("second"),                                  //1
+                this.without(this.item("no status"), "status"),       //2 驗證失敗
+                Map.of("title", this.title("bad uuid"), "content", "content", "categoryId", "nope", "status", "DRAFT"), //3 無法轉換
+                this.item("fifth"),                                   //4 第二批
+                this.item("second"),                                  //5 與前一批已寫入的標題重複
+                this.item("fifth"),                                   //6 與同一批前面的項目重複
+                this.with(this.item("unknown category"), "categoryId", UUID.randomUUID()), //7
+                this.with(this.item("unknown tag"), "tagsId", List.of(UUID.randomUUID())), //8
+                this.item("existing")                                 //9 與資料庫中的文章重複
+        );
+
+        JsonNode result = this.importPosts(MediaType.APPLICATION_JSON, objectMapper.writeValueAsString(items));
+
+        assertEquals(3, result.get("imported").asInt());
+        assertEquals(7, result.get("failed").asInt());
+        Map<Integer, String> failures = this.failures(result);
+        assertEquals(List.of(2, 3, 5, 6, 7, 8, 9), List.copyOf(failures.keySet()));
+        assertEquals("Status is required", failures.get(2));
+        assertTrue(failures.get(3).startsWith("Invalid post: "), failures.get(3));
+        assertEquals("Title already exists", failures.get(5));
+        assertEquals("Title already exists", failures.get(6));
+        assertTrue(failures.get(7).startsWith("Category not found"), failures.get(7));
+        assertTrue(failures.get(8).startsWith("Tag not found"), failures.get(8));
+        assertEquals("Title already exists", failures.get(9));
+
+        assertEquals(Set.of(this.title("first"), this.title("second"), this.title("fifth")),
+                postRepository.findExistingTitles(Set.of(this.title("first"), this.title("second"), this.title("fifth"), this.title("no status"))));
+    }
+
+    @Test
+    void ndjsonSkipsMalformedLines() throws Exception {
+        String body = objectMapper.writeValueAsString(this.item("line one")) + "\n"
+                + "\n"
+                + "{oops\n"
+                + objectMapper.writeValueAsString(this.item("line one")) + "\n"
+                + objectMapper.writeValueAsString(this.item("line four")) + "\n";
+
+        JsonNode result = this.importPosts(MediaType.parseMediaType("application/x-ndjson"), body);
+
+        assertEquals(2, result.get("imported").asInt());
+        Map<Integer, String> failures = this.failures(result);
+        assertEquals(Map.of(1, "Malformed JSON", 2, "Title already exists"), failures);
+    }
+
+    @Test
+    void malformedJsonArrayStopsReadingButKeepsEarlierItems() throws Exception {
+        String body = "[" + objectMapper.writeValueAsString(this.item("before error")) + ", {bad";
+
+        JsonNode result = this.importPosts(MediaType.APPLICATION_JSON, body);
+
+        assertEquals(1, result.get("imported").asInt());
+        assertEquals(Map.of(1, "Malformed JSON, remaining items were not read"), this.failures(result));
+    }
+
+    //分類在檢查之後、寫入之前被刪除：整批寫入失敗，逐筆重試時只有使用該分類的項目失敗，並回報違反的限制
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriedItemsReportTheViolatedConstraint() throws Exception {
+        CategoryDto doomed = categoryService.createCategory(new CreateCategoryRequest("doomed-" + suffix));
+        doAnswer(invocation -> {
+            List<Category> categories = (List<Category>) invocation.callRealMethod();
+            categoryRepository.deleteById(doomed.getId());
+            return categories;
+        }).when(categoryService).findCategoriesByIds(any());
+
+        List<Object> items = List.of(
+                this.item("kept one"),
+                this.with(this.item("deleted category"), "categoryId", doomed.getId()),
+                this.item("kept two")
+        );
+
+        JsonNode result = this.importPosts(MediaType.APPLICATION_JSON, objectMapper.writeValueAsString(items));
+
+        assertEquals(2, result.get("imported").asInt());
+        assertEquals(Map.of(1, "Category, tag or author no longer exists"), this.failures(result));
+    }
+
+    private JsonNode importPosts(MediaType contentType, String body) throws Exception {
+        String response = mockMvc.perform(post("/api/v1/posts/import")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    //index -> message，依 index 排序
+    private Map<Integer, String> failures(JsonNode result) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        for (JsonNode failure : result.get("failures")) {
+            failures.put(failure.get("index").asInt(), failure.get("message").asText());
+        }
+        return failures;
+    }
+
+    private Map<String, Object> item(String title) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("title", this.title(title));
+        item.put("content", "content of " + title);
+        item.put("categoryId", categoryId);
+        item.put("tagsId", List.of(tagId));
+        item.put("status", "PUBLISHED");
+        return item;
+    }
+
+    private Map<String, Object> with(Map<String, Object> item, String field, Object value) {
+        item.put(field, value);
+        return item;
+    }
+
+    private Map<String, Object> without(Map<String, Object> item, String field) {
+        item.remove(field);
+        return item;
+    }
+
+    private String title(String title) {
+        return title + " " + suffix;
+    }
+}
@@ -0,0 +1,150 @@
+package com.practice.demo.events;
+
+import com.practice.demo.domain.PostStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//直接建立 PostEventBus，不需要 Spring context：sync 模式在 commit 之後送達，async 模式在 linger 期間合併同一篇文章的事件
+class PostEventBusTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<List<PostEvent>> batches = new CopyOnWriteArrayList<>();
+
+    private PostEventBus bus;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        if (bus != null) {
+            bus.destroy();
+        }
+    }
+
+    @Test
+    void syncModeDeliversAfterCommitOnly() {
+        bus = this.bus(PostEventBus.Mode.SYNC, Duration.ZERO, batches::add);
+
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(this.created(UUID.randomUUID()));
+        assertTrue(batches.isEmpty());
+        this.complete(true);
+        assertEquals(1, batches.size());
+
+        //回滾的交易不會發送
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(this.created(UUID.randomUUID()));
+        this.complete(false);
+        assertEquals(1, batches.size());
+
+        //沒有交易時直接發送
+        bus.publish(this.created(UUID.randomUUID()));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    void failingConsumerDoesNotAffectOthers() {
+        bus = new PostEventBus(
+                List.of(events -> {
+                    throw new IllegalStateException("consumer failed");
+                }, batches::add),
+                meterRegistry, PostEventBus.Mode.SYNC, 1, 10, 10, Duration.ZERO);
+
+        bus.publish(this.created(UUID.randomUUID()));
+
+        assertEquals(1, batches.size());
+        assertEquals(1, meterRegistry.get("post.events.failed").counters().stream().mapToDouble(c -> c.count()).sum());
+        assertEquals(1, meterRegistry.get("post.events.delivered").counters().stream().mapToDouble(c -> c.count()).sum());
+    }
+
+    @Test
+    void asyncModeCoalescesEventsOfTheSamePost() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        bus = this.bus(PostEventBus.Mode.ASYNC, Duration.ofMillis(200), events -> {
+            batches.add(events);
+            delivered.countDown();
+        });
+
+        UUID coalescedId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        PostState draft = new PostState(PostStatus.DRAFT, UUID.randomUUID(), Set.of());
+        PostState published = new PostState(PostStatus.PUBLISHED, draft.categoryId(), Set.of());
+
+        bus.publish(new PostEvent(coalescedId, PostEventType.CREATED, null, draft, Instant.now()));
+        bus.publish(this.created(otherId));
+        bus.publish(new PostEvent(coalescedId, PostEventType.PUBLISHED, draft, published, Instant.now()));
+        bus.publish(new PostEvent(coalescedId, PostEventType.DELETED, published, null, Instant.now()));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        List<PostEvent> batch = batches.get(0);
+
+        //同一篇文章只出現一次，依第一個事件的順序
+        assertEquals(List.of(coalescedId, otherId), batch.stream().map(PostEvent::postId).toList());
+        PostEvent coalesced = batch.get(0);
+        assertEquals(PostEventType.DELETED, coalesced.type());
+        assertNull(coalesced.before());
+        assertNull(coalesced.after());
+    }
+
+    //deliverPending 不等 linger，在呼叫端的執行緒上送出；只送給指定的消費者
+    @Test
+    void deliverPendingSkipsTheLinger() throws InterruptedException {
+        List<List<PostEvent>> others = new CopyOnWriteArrayList<>();
+        PostEventListener listener = batches::add;
+        bus = new PostEventBus(List.of(listener, others::add), meterRegistry, PostEventBus.Mode.ASYNC, 1, 10, 10, Duration.ofHours(1));
+
+        UUID postId = UUID.randomUUID();
+        bus.publish(this.created(postId));
+        assertTrue(batches.isEmpty());
+
+        bus.deliverPending(listener);
+        assertEquals(List.of(postId), batches.stream().flatMap(List::stream).map(PostEvent::postId).toList());
+        assertTrue(others.isEmpty());
+
+        //關閉時不等 linger，其他消費者佇列中的事件也會送出
+        bus.destroy();
+        bus = null;
+        assertEquals(1, others.size());
+        assertEquals(1, batches.size());
+    }
+
+    private PostEventBus bus(PostEventBus.Mode mode, Duration linger, PostEventListener listener) {
+        return new PostEventBus(List.of(listener), meterRegistry, mode, 1, 10, 10, linger);
+    }
+
+    private PostEvent created(UUID postId) {
+        PostState state = new PostState(PostStatus.PUBLISHED, UUID.randomUUID(), Set.of());
+        return new PostEvent(postId, PostEventType.CREATED, null, state, Instant.now());
+    }
+
+    private void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (committed) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(committed
+                    ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.practice.demo.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//InvertedIndex 的結果與逐篇計分的 BM25 完全相同（文章與分數），包括多次更新、刪除觸發 compact 之後，以及快照載入之後
+class InvertedIndexTests {
+
+    //sprin 開頭的字詞少於 MAX_PREFIX_TERMS 個，長前綴展開的結果是確定的
+    private static final String[] WORDS = {
+            "spring", "sprint", "sprinkle", "springboot", "spa", "spam", "span", "s", "sp",
+            "boot", "cache", "index", "query", "latency", "java", "jvm", "Java", "JVM2", "café", "naïve"
+    };
+
+    private static final String CJK = "效能調校需要先量測再優化避免過早最佳化的";
+
+    private static final List<String> QUERIES = List.of(
+            //1 到 4 個字的前綴直接查前綴索引
+            "s", "sp", "spr", "spri", "SPRI", "j",
+            //超過 4 個字的前綴展開成字詞
+            "sprin", "spring", "sprink", "springb", "naïve", "café", "caf",
+            //完整的字詞（結尾有空白或標點）
+            "spring ", "spa.", "s ", "java jvm ", "boot spring cache ",
+            //多個字詞，最後一個是前綴
+            "boot sp", "cache java la", "spring spring sp", "nothing", "spring nothing",
+            //中日文的 bigram 與單字
+            "效能", "效", "調校 java", "效能調校", "的", "的 ", "最佳化 boot sp"
+    );
+
+    private static final int[] LIMITS = {1, 3, 10, 10_000};
+
+    @Test
+    void searchMatchesBruteForceTopKThroughUpdatesAndCompaction() {
+        Random random = new Random(42);
+        InvertedIndex index = new InvertedIndex();
+        ReferenceIndex reference = new ReferenceIndex();
+        List<UUID> ids = new ArrayList<>();
+
+        for (int operation = 1; operation <= 24_000; operation++) {
+            int kind = random.nextInt(10);
+            if (kind < 5 || ids.isEmpty()) {
+                UUID postId = UUID.randomUUID();
+                ids.add(postId);
+                this.put(index, reference, postId, random);
+            } else if (kind < 7) {
+                this.put(index, reference, ids.get(random.nextInt(ids.size())), random);
+            } else {
+                UUID postId = ids.get(random.nextInt(ids.size()));
+                index.remove(postId);
+                reference.remove(postId);
+            }
+
+            if (operation % 3_000 == 0) {
+                assertEquals(reference.liveDocs(), index.size());
+                this.assertSameResults(index, reference);
+            }
+        }
+
+        //刪除的文章超過門檻時才 compact，這裡確認上面的操作確實觸發了幾次
+        assertTrue(reference.compactions >= 3, "compactions: " + reference.compactions);
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path directory) throws IOException {
+        Random random = new Random(7);
+        InvertedIndex index = new InvertedIndex();
+        ReferenceIndex reference = new ReferenceIndex();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            UUID postId = UUID.randomUUID();
+            ids.add(postId);
+            this.put(index, reference, postId, random);
+        }
+        //留下未 compact 的刪除，寫入快照前會先 compact
+        for (int i = 0; i < 500; i++) {
+            UUID postId = ids.get(random.nextInt(ids.size()));
+            index.remove(postId);
+            reference.remove(postId);
+        }
+
+        Path file = directory.resolve("index.snapshot");
+        LocalDateTime watermark = LocalDateTime.of(2025, 7, 1, 12, 30, 15, 123_456_789);
+        index.writeTo(file, watermark);
+        reference.compact();
+        this.assertSameResults(index, reference);
+
+        InvertedIndex.Snapshot snapshot = InvertedIndex.readFrom(file);
+        assertEquals(watermark, snapshot.watermark());
+        assertEquals(index.size(), snapshot.index().size());
+        assertEquals(index.termCount(), snapshot.index().termCount());
+        assertEquals(index.postingsBytes(), snapshot.index().postingsBytes());
+        this.assertSameResults(snapshot.index(), reference);
+
+        //載入的索引可以繼續更新
+        InvertedIndex loaded = snapshot.index();
+        for (int i = 0; i < 200; i++) {
+            this.put(loaded, reference, ids.get(random.nextInt(ids.size())), random);
+        }
+        UUID removed = ids.get(0);
+        loaded.remove(removed);
+        reference.remove(removed);
+        this.assertSameResults(loaded, reference);
+    }
+
+    @Test
+    void corruptedOrTruncatedSnapshotIsRejected(@TempDir Path directory) throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            index.put(UUID.randomUUID(), this.text(random, 3), this.text(random, 30));
+        }
+        Path file = directory.resolve("index.snapshot");
+        index.writeTo(file, LocalDateTime.now());
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] flipped = bytes.clone();
+        flipped[bytes.length / 2] ^= 1;
+        this.assertRejected(directory, flipped);
+
+        //checksum 正確但不是快照的格式
+        byte[] header = bytes.clone();
+        header[0] ^= 1;
+        CRC32 checksum = new CRC32();
+        checksum.update(header, 0, header.length - Long.BYTES);
+        ByteBuffer.wrap(header).putLong(header.length - Long.BYTES, checksum.getValue());
+        this.assertRejected(directory, header);
+
+        this.assertRejected(directory, Arrays.copyOf(bytes, bytes.length - 1));
+        this.assertRejected(directory, Arrays.copyOf(bytes, 20));
+        this.assertRejected(directory, new byte[0]);
+    }
+
+    private void assertRejected(Path directory, byte[] content) throws IOException {
+        Path file = Files.createTempFile(directory, "broken", ".snapshot");
+        Files.write(file, content);
+        assertThrows(IOException.class, () -> InvertedIndex.readFrom(file));
+    }
+
+    private void put(InvertedIndex index, ReferenceIndex reference, UUID postId, Random random) {
+        String title = this.text(random, 1 + random.nextInt(3));
+        String content = this.text(random, random.nextInt(40));
+        index.put(postId, title, content);
+        reference.put(postId, title, content);
+    }
+
+    //英文字詞、HTML 標籤、標點與中日文片段混合
+    private String text(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int kind = random.nextInt(10);
+            if (kind < 2) {
+                int start = random.nextInt(CJK.length());
+                text.append(CJK, start, Math.min(CJK.length(), start + 1 + random.nextInt(3)));
+            } else {
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            text.append(switch (random.nextInt(6)) {
+                case 0 -> "<br>";
+                case 1 -> ", ";
+                case 2 -> "<b class=\"x\">";
+                default -> " ";
+            });
+        }
+        return text.toString();
+    }
+
+    private void assertSameResults(InvertedIndex index, ReferenceIndex reference) {
+        Set<String> empty = new TreeSet<>();
+        for (String query : QUERIES) {
+            for (int limit : LIMITS) {
+                List<InvertedIndex.Hit> expected = reference.search(query, limit);
+                List<InvertedIndex.Hit> actual = index.search(query, limit);
+                assertEquals(expected, actual, query + " limit " + limit);
+                if (expected.isEmpty()) {
+                    empty.add(query);
+                }
+            }
+        }
+        //只有包含不存在字詞的查詢沒有結果
+        assertEquals(Set.of("nothing", "spring nothing"), empty);
+    }
+
+    /**
+     * 逐篇計分的 BM25，與 InvertedIndex 相同的規則：
+     * 刪除的文章在 compact 之前仍計入字詞的文章數（idf），compact 的條件相同；
+     * 分數依 clause 的文章數由少到多相加，同分時先加入的文章在前。
+     */
+    private static final class ReferenceIndex {
+
+        private static final int MIN_DELETED_FOR_COMPACTION = 1024;
+
+        private final List<Doc> docs = new ArrayList<>();
+
+        private final Map<UUID, Doc> live = new HashMap<>();
+
+        private int deleted;
+
+        private int compactions;
+
+        private static final class Doc {
+
+            private final UUID postId;
+
+            private final String title;
+
+            private final Map<String, Integer> frequencies;
+
+            private final int length;
+
+            private boolean deleted;
+
+            private Doc(UUID postId, String title, Map<String, Integer> frequencies, int length) {
+                this.postId = postId;
+                this.title = title;
+                this.frequencies = frequencies;
+                this.length = length;
+            }
+        }
+
+        private void put(UUID postId, String title, String content) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            int length = PostSearchTokenizer.tokenize(title, false, term -> frequencies.merge(term, InvertedIndex.TITLE_WEIGHT, Integer::sum)) * InvertedIndex.TITLE_WEIGHT
+                    + PostSearchTokenizer.tokenize(content, true, term -> frequencies.merge(term, 1, Integer::sum));
+
+            this.remove(postId);
+            Doc doc = new Doc(postId, title, frequencies, length);
+            docs.add(doc);
+            live.put(postId, doc);
+        }
+
+        private void remove(UUID postId) {
+            Doc doc = live.remove(postId);
+            if (doc == null) {
+                return;
+            }
+            doc.deleted = true;
+            deleted++;
+            if (deleted >= MIN_DELETED_FOR_COMPACTION && deleted * 4L > docs.size()) {
+                this.compact();
+            }
+        }
+
+        private void compact() {
+            if (deleted > 0) {
+                docs.removeIf(doc -> doc.deleted);
+                deleted = 0;
+                compactions++;
+            }
+        }
+
+        private int liveDocs() {
+            return live.size();
+        }
+
+        //一個查詢條件：一個字詞、一個前綴（前綴索引），或展開成多個字詞取最高分
+        private record Clause(List<Map<String, Integer>> frequencies, long cost, List<Float> idfs) {
+        }
+
+        private List<InvertedIndex.Hit> search(String query, int limit) {
+            PostSearchTokenizer.Query parsed = PostSearchTokenizer.parseQuery(query);
+            if (parsed.terms().isEmpty() || live.isEmpty()) {
+                return List.of();
+            }
+
+            List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(parsed.terms()));
+            String prefix = null;
+            if (parsed.lastIsPrefix()) {
+                prefix = parsed.terms().getLast();
+                queryTerms.remove(prefix);
+            }
+
+            long totalLength = 0;
+            for (Doc doc : live.values()) {
+                totalLength += doc.length;
+            }
+            int liveDocs = live.size();
+            float averageLength = Math.max(1f, (float) totalLength / liveDocs);
+
+            List<List<String>> clauseTerms = new ArrayList<>();
+            List<Boolean> prefixClause = new ArrayList<>();
+            for (String term : queryTerms) {
+                clauseTerms.add(List.of(term));
+                prefixClause.add(false);
+            }
+            if (prefix != null && prefix.codePointCount(0, prefix.length()) <= InvertedIndex.MAX_PREFIX_LENGTH) {
+                clauseTerms.add(List.of(prefix));
+                prefixClause.add(true);
+            } else if (prefix != null) {
+                //索引中（包括尚未 compact 的已刪除文章）以這個前綴開頭的字詞，測試資料不超過 MAX_PREFIX_TERMS 個
+                Set<String> expansions = new TreeSet<>();
+                for (Doc doc : docs) {
+                    for (String term : doc.frequencies.keySet()) {
+                        if (term.startsWith(prefix)) {
+                            expansions.add(term);
+                        }
+                    }
+                }
+                assertTrue(expansions.size() <= InvertedIndex.MAX_PREFIX_TERMS);
+                clauseTerms.add(List.copyOf(expansions));
+                prefixClause.add(false);
+            }
+
+            //每個 clause 的每個字詞：文章數（docFreq）與 idf
+            record Term(boolean prefix, String value, int docFreq, float idf) {
+            }
+            List<List<Term>> clauses = new ArrayList<>();
+            List<Long> costs = new ArrayList<>();
+            for (int i = 0; i < clauseTerms.size(); i++) {
+                List<Term> terms = new ArrayList<>();
+                long cost = 0;
+                for (String value : clauseTerms.get(i)) {
+                    int docFreq = 0;
+                    for (Doc doc : docs) {
+                        if (this.frequency(doc, value, prefixClause.get(i)) > 0) {
+                            docFreq++;
+                        }
+                    }
+                    if (docFreq == 0) {
+                        continue;
+                    }
+                    float idf = (float) Math.log(1 + (Math.max(0, liveDocs - docFreq) + 0.5) / (docFreq + 0.5));
+                    terms.add(new Term(prefixClause.get(i), value, docFreq, idf));
+                    cost += docFreq;
+                }
+                if (terms.isEmpty()) {
+                    return List.of();
+                }
+                clauses.add(terms);
+                costs.add(cost);
+            }
+
+            //與 InvertedIndex 相同，依文章數排序（穩定排序），分數依這個順序相加
+            Integer[] order = new Integer[clauses.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(costs::get));
+
+            List<InvertedIndex.Hit> hits = new ArrayList<>();
+            for (Doc doc : docs) {
+                if (doc.deleted) {
+                    continue;
+                }
+                float score = 0;
+                boolean matched = true;
+                for (int clause : order) {
+                    float best = 0;
+                    boolean found = false;
+                    for (Term term : clauses.get(clause)) {
+                        int frequency = this.frequency(doc, term.value(), term.prefix());
+                        if (frequency > 0) {
+                            found = true;
+                            best = Math.max(best, bm25(term.idf(), frequency, doc.length, averageLength));
+                        }
+                    }
+                    if (!found) {
+                        matched = false;
+                        break;
+                    }
+                    score += best;
+                }
+                if (matched) {
+                    hits.add(new InvertedIndex.Hit(doc.postId, doc.title, score));
+                }
+            }
+
+            //分數由高到低，同分時依加入的順序（docs 的順序）
+            hits.sort(Comparator.comparingDouble(InvertedIndex.Hit::score).reversed());
+            return hits.subList(0, Math.min(limit, hits.size()));
+        }
+
+        //前綴：以 value 開頭的字詞的 frequency 總和
+        private int frequency(Doc doc, String value, boolean prefix) {
+            if (!prefix) {
+                return doc.frequencies.getOrDefault(value, 0);
+            }
+            int frequency = 0;
+            Iterator<Map.Entry<String, Integer>> entries = doc.frequencies.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Integer> entry = entries.next();
+                if (entry.getKey().startsWith(value)) {
+                    frequency += entry.getValue();
+                }
+            }
+            return frequency;
+        }
+
+        private static float bm25(float idf, float tf, int length, float averageLength) {
+            float norm = InvertedIndex.K1 * (1 - InvertedIndex.B + InvertedIndex.B * length / averageLength);
+            return idf * tf * (InvertedIndex.K1 + 1) / (tf + norm);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.practice.demo.services;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
+import com.practice.demo.repositories.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//另外建立 PostSearchIndex（不是 Spring 管理的 bean，不會收到文章事件），快照寫到暫存目錄，
+//載入快照時只能由 catchUp 補上快照之後的變更；每個測試以隨機的字詞搜尋，不會找到其他測試的文章
+@SpringBootTest
+@ActiveProfiles("test")
+class PostSearchIndexTests extends BlogTestFixture {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PostService postService;
+
+    @TempDir
+    private Path directory;
+
+    private String term;
+
+    @BeforeEach
+    void setUp() {
+        term = "idx" + suffix;
+    }
+
+    @Test
+    void catchUpAppliesChangesMadeAfterTheSnapshot() throws IOException {
+        UUID kept = this.createPost("kept", PostStatus.PUBLISHED);
+        UUID deleted = this.createPost("deleted", PostStatus.PUBLISHED);
+        UUID unpublished = this.createPost("unpublished", PostStatus.PUBLISHED);
+        UUID edited = this.createPost("edited", PostStatus.PUBLISHED);
+        UUID published = this.createPost("published", PostStatus.DRAFT);
+
+        Path snapshotPath = directory.resolve("index.snapshot");
+        PostSearchIndex before = this.index(snapshotPath);
+        assertEquals(Set.of(kept, deleted, unpublished, edited), this.search(before, term));
+        before.snapshot();
+        assertTrue(Files.exists(snapshotPath));
+
+        postService.deletePost(deleted);
+        postService.patchPost(unpublished, null, PatchPostRequestDto.builder().status(PostStatus.DRAFT).build());
+        postService.patchPost(edited, null, PatchPostRequestDto.builder().title("rewritten " + term).content("rewritten content").build());
+        postService.patchPost(published, null, PatchPostRequestDto.builder().status(PostStatus.PUBLISHED).build());
+
+        PostSearchIndex after = this.index(snapshotPath);
+        assertEquals(Set.of(kept, edited, published), this.search(after, term));
+        assertEquals(Set.of(edited), this.search(after, "rewritten " + term));
+        assertEquals(Set.of(), this.search(after, "deleted " + term));
+        assertEquals(Set.of(), this.search(after, "unpublished " + term));
+    }
+
+    //快照損壞時從資料庫重建
+    @Test
+    void corruptedSnapshotFallsBackToRebuild() throws IOException {
+        UUID postId = this.createPost("rebuilt", PostStatus.PUBLISHED);
+        Path snapshotPath = directory.resolve("index.snapshot");
+        Files.write(snapshotPath, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        assertEquals(Set.of(postId), this.search(this.index(snapshotPath), term));
+    }
+
+    private PostSearchIndex index(Path snapshotPath) {
+        PostSearchIndex index = new PostSearchIndex(postRepository, transactionTemplate, new SimpleMeterRegistry(), snapshotPath.toString());
+        index.afterPropertiesSet();
+        return index;
+    }
+
+    //結尾加空白，最後一個字詞不以前綴比對
+    private Set<UUID> search(PostSearchIndex index, String query) {
+        return index.search(query + " ", 100).stream().map(InvertedIndex.Hit::postId).collect(Collectors.toSet());
+    }
+
+    private UUID createPost(String title, PostStatus status) {
+        return postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(title + " " + term)
+                .content("content of the " + title + " post")
+                .categoryId(categoryId)
+                .status(status)
+                .build()).getId();
+    }
+}
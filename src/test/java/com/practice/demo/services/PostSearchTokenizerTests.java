@@ -0,0 +1,73 @@
+package com.practice.demo.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostSearchTokenizerTests {
+
+    @Test
+    void latinWordsAreLowerCasedAndSplitOnPunctuation() {
+        assertEquals(List.of("spring", "boot", "3", "5", "4", "café", "naïve"), this.tokenize("Spring-Boot 3.5.4, CAFÉ naïve!", false));
+        assertEquals(List.of("jdk21", "g1gc"), this.tokenize("JDK21 G1GC", false));
+    }
+
+    @Test
+    void cjkRunsBecomeOverlappingBigrams() {
+        assertEquals(List.of("效能", "能調", "調校"), this.tokenize("效能調校", false));
+        //與英數字相鄰也是分隔
+        assertEquals(List.of("java", "效能", "調校"), this.tokenize("Java效能，調校", false));
+        //BMP 以外的字元（CJK Extension B）
+        assertEquals(List.of("𠀀𠀁"), this.tokenize("𠀀𠀁", false));
+    }
+
+    //只有一個字的中日文以單字為字詞
+    @Test
+    void singleCjkCharacterIsAUnigram() {
+        assertEquals(List.of("的"), this.tokenize("的", false));
+        assertEquals(List.of("a", "的", "b"), this.tokenize("a的b", false));
+        assertEquals(List.of("效能", "的"), this.tokenize("效能 的", false));
+    }
+
+    @Test
+    void htmlTagsAreSkippedOnlyInHtmlMode() {
+        assertEquals(List.of("hello", "world"), this.tokenize("<p class=\"spring\">Hello</p><br/>world", true));
+        assertEquals(List.of("p", "class", "spring", "hello", "p", "br", "world"), this.tokenize("<p class=\"spring\">Hello</p><br/>world", false));
+        //不是標籤的 < 仍然是分隔
+        assertEquals(List.of("a", "b"), this.tokenize("a < b", true));
+    }
+
+    @Test
+    void longWordsAreTruncated() {
+        String word = "a".repeat(PostSearchTokenizer.MAX_TERM_LENGTH + 10);
+        assertEquals(List.of("a".repeat(PostSearchTokenizer.MAX_TERM_LENGTH), "b"), this.tokenize(word + " b", false));
+    }
+
+    @Test
+    void countIncludesRepeatedTerms() {
+        List<String> terms = new ArrayList<>();
+        assertEquals(6, PostSearchTokenizer.tokenize("spring spring 效能調校 的", false, terms::add));
+        assertEquals(6, terms.size());
+        assertEquals(0, PostSearchTokenizer.tokenize(null, true, terms::add));
+    }
+
+    @Test
+    void lastTermIsAPrefixUnlessFollowedBySeparator() {
+        assertEquals(new PostSearchTokenizer.Query(List.of("spring", "bo"), true), PostSearchTokenizer.parseQuery("Spring bo"));
+        assertEquals(new PostSearchTokenizer.Query(List.of("spring", "boot"), false), PostSearchTokenizer.parseQuery("spring boot "));
+        assertEquals(new PostSearchTokenizer.Query(List.of("spring"), false), PostSearchTokenizer.parseQuery("spring."));
+        assertEquals(new PostSearchTokenizer.Query(List.of("效能", "能調"), true), PostSearchTokenizer.parseQuery("效能調"));
+        assertEquals(new PostSearchTokenizer.Query(List.of("效"), true), PostSearchTokenizer.parseQuery("效"));
+        assertEquals(new PostSearchTokenizer.Query(List.of(), false), PostSearchTokenizer.parseQuery(" ,. "));
+    }
+
+    private List<String> tokenize(String text, boolean html) {
+        List<String> terms = new ArrayList<>();
+        int count = PostSearchTokenizer.tokenize(text, html, terms::add);
+        assertEquals(terms.size(), count);
+        return terms;
+    }
+}
@@ -0,0 +1,86 @@
+package com.practice.demo.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//寫入時的內容分析：字數、閱讀時間、摘要與內容雜湊，不需要 Spring context
+class PostTextAnalyzerTests {
+
+    @Test
+    void countsCjkCharactersAndLatinWords() {
+        //Hello、world、Spring-Boot、3 各算一個字（只有標點的片段不算），「這是中文測試」與「ひらがな」「カタカナ」每個字元各算一個字
+        PostTextAnalyzer.Result result = PostTextAnalyzer.analyze("Hello, world! 這是中文測試 Spring-Boot 3 ひらがなカタカナ -- ...");
+
+        assertEquals(4 + 6 + 4 + 4, result.wordCount());
+        assertEquals(1, result.readingTime());
+
+        //英文 401 個字需要 3 分鐘，中文 401 個字需要 2 分鐘
+        assertEquals(3, PostTextAnalyzer.analyze("word ".repeat(401)).readingTime());
+        assertEquals(2, PostTextAnalyzer.analyze("字".repeat(401)).readingTime());
+
+        //字母緊接著漢字時，漢字之後的字母是新的一個字
+        assertEquals(3, PostTextAnalyzer.analyze("abc中def").wordCount());
+
+        //補充平面的漢字（擴充 B）是一個字，不是兩個
+        assertEquals(2, PostTextAnalyzer.analyze("𠀀𠀁").wordCount());
+
+        assertEquals(0, PostTextAnalyzer.analyze("").readingTime());
+        assertEquals(0, PostTextAnalyzer.analyze(null).wordCount());
+    }
+
+    @Test
+    void skipsHtmlTagsButNotComparisons() {
+        PostTextAnalyzer.Result result = PostTextAnalyzer.analyze(
+                "<p class=\"intro\">Hello</p><!-- note --><p>a < b and 3<4</p><br/><?xml?>end");
+
+        assertEquals("Hello a < b and 3<4 end", result.excerpt());
+        //標籤裡的 class、intro、note 不算字，單獨的 < 也不算
+        assertEquals(6, result.wordCount());
+
+        //標籤視為空白，相鄰的文字不會黏在一起
+        assertEquals("one two", PostTextAnalyzer.analyze("one<br>two").excerpt());
+        //沒有結束的標籤直到內容結尾都是標籤
+        assertEquals("text", PostTextAnalyzer.analyze("text <b unterminated").excerpt());
+        assertEquals("<", PostTextAnalyzer.analyze("<").excerpt());
+    }
+
+    @Test
+    void excerptCollapsesWhitespaceAndTruncates() {
+        assertEquals("a".repeat(200), PostTextAnalyzer.analyze(" \n" + "a".repeat(200) + "\t ").excerpt());
+        assertEquals("a".repeat(200) + "...", PostTextAnalyzer.analyze("a".repeat(200) + " b").excerpt());
+        assertEquals("one two", PostTextAnalyzer.analyze("one \n\t  two").excerpt());
+
+        //截斷的位置落在 surrogate pair 中間時，整個字元都不放入摘要
+        String truncated = PostTextAnalyzer.analyze("x".repeat(199) + "😀" + "yyy").excerpt();
+        assertEquals("x".repeat(199) + "...", truncated);
+
+        //surrogate pair 完整落在摘要內時保留
+        String kept = PostTextAnalyzer.analyze("x".repeat(198) + "😀" + "yyy").excerpt();
+        assertEquals("x".repeat(198) + "😀" + "...", kept);
+    }
+
+    @Test
+    void contentHashMatchesAnalyze() {
+        for (String content : List.of("", "plain", "<b>x</b>", "中文 😀 𠀀 text", "a < b\r\n", "x".repeat(10_000))) {
+            assertEquals(PostTextAnalyzer.analyze(content).contentHash(), PostTextAnalyzer.contentHash(content), content);
+        }
+        assertEquals(PostTextAnalyzer.analyze(null).contentHash(), PostTextAnalyzer.contentHash(null));
+        assertEquals(16, PostTextAnalyzer.contentHash("x").length());
+
+        //標籤不計入字數，但仍然是內容的一部分
+        assertNotEquals(PostTextAnalyzer.contentHash("<b>x</b>"), PostTextAnalyzer.contentHash("<i>x</i>"));
+    }
+
+    @Test
+    void plainTextUsesTheExcerptRules() {
+        String content = "<p>Hello,\n  <em>world</em></p> a < b <!-- c -->";
+
+        assertEquals("Hello, world a < b", PostTextAnalyzer.plainText(content));
+        assertEquals(PostTextAnalyzer.analyze(content).excerpt(), PostTextAnalyzer.plainText(content));
+        assertEquals("", PostTextAnalyzer.plainText(null));
+        assertEquals("", PostTextAnalyzer.plainText("  <br/> "));
+    }
+}
@@ -0,0 +1,132 @@
+package com.practice.demo.services;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CategoryDto;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.TagDto;
+import com.practice.demo.events.PostEventBus;
+import com.practice.demo.repositories.CategoryRepository;
+import com.practice.demo.repositories.PublishedPostCountRepository;
+import com.practice.demo.repositories.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+
+//文章事件在 event bus 的 linger 期間 reconcile：事件已經 commit，重新計算時已經包含，之後送達不能再加一次
+//mode=async 且 linger 設為 1 小時，事件只在 reconcile 或測試呼叫 deliverPending 時送達；使用獨立的資料庫
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:counters-linger;DB_CLOSE_DELAY=-1",
+        "blog.events.mode=async",
+        "blog.events.linger=1h",
+        "blog.counters.flush-interval=1h",
+        "blog.counters.reconcile-interval=1h"
+})
+@ActiveProfiles("test")
+class PublishedPostCountersLingerTests extends BlogTestFixture {
+
+    @Autowired
+    private PublishedPostCounters publishedPostCounters;
+
+    @Autowired
+    private PostEventBus postEventBus;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private TagService tagService;
+
+    @MockitoSpyBean
+    private PublishedPostCountRepository publishedPostCountRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    private UUID tagId;
+
+    @BeforeEach
+    void setUp() {
+        tagId = tagService.createTags(Set.of("tag-" + suffix)).getFirst().getId();
+        publishedPostCounters.reconcile();
+    }
+
+    @Test
+    void eventWaitingInTheBusIsNotCountedTwice() {
+        this.createPost("lingering");
+        //事件還在佇列中
+        publishedPostCounters.flush();
+        this.assertCounts(0, 0);
+
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+        this.assertCounts(1, 1);
+
+        //佇列中已經沒有這個事件，之後送達與寫入不會改變數量
+        postEventBus.deliverPending(publishedPostCounters);
+        publishedPostCounters.flush();
+        this.assertCounts(1, 1);
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+    }
+
+    //reconcile 取得佇列中的事件之後、重新計算之前，另一個執行緒 commit 的文章：重新計算已經包含，事件在重新計算之後才送達
+    @Test
+    void eventCommittedBeforeTheRecountIsNotCountedTwice() {
+        this.createPost("lingering");
+        //reconcile 寫入第一篇的增減量時建立第二篇
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> this.createPost("concurrent")).join();
+            return invocation.callRealMethod();
+        }).when(publishedPostCountRepository).addCategoryCounts(any());
+
+        try {
+            assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+        } finally {
+            reset(publishedPostCountRepository);
+        }
+
+        //第二篇的增減量留到 flush，重新計算的結果沒有寫入
+        this.assertCounts(1, 1);
+        publishedPostCounters.flush();
+        this.assertCounts(2, 2);
+
+        postEventBus.deliverPending(publishedPostCounters);
+        publishedPostCounters.flush();
+        this.assertCounts(2, 2);
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+    }
+
+    private void createPost(String title) {
+        postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(title + " " + suffix)
+                .content("content of " + title)
+                .categoryId(categoryId)
+                .tagsId(Set.of(tagId))
+                .status(PostStatus.PUBLISHED)
+                .build());
+    }
+
+    private void assertCounts(long category, long tag) {
+        List<CategoryDto> categories = categoryRepository.findAllWithPostCount();
+        List<TagDto> tags = tagRepository.findAllWithPostCount();
+
+        assertEquals(List.of(category, tag), List.of(
+                categories.stream().filter(dto -> dto.getId().equals(categoryId)).findFirst().orElseThrow().getPostCount(),
+                tags.stream().filter(dto -> dto.getId().equals(tagId)).findFirst().orElseThrow().getPostCount()));
+    }
+}
@@ -0,0 +1,225 @@
+package com.practice.demo.services;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CategoryDto;
+import com.practice.demo.domain.dtos.CreateCategoryRequest;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
+import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.TagDto;
+import com.practice.demo.events.PostEvent;
+import com.practice.demo.events.PostState;
+import com.practice.demo.repositories.CategoryRepository;
+import com.practice.demo.repositories.PublishedPostCountRepository;
+import com.practice.demo.repositories.TagRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+//已發布文章數：文章事件（mode=sync，commit 後直接送達）累計增減量，flush 才寫入；使用獨立的資料庫，reconcile 的結果只包含這裡的資料
+//排程的 flush 與 reconcile 設為 1 小時，只在測試中手動執行
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:counters;DB_CLOSE_DELAY=-1",
+        "blog.counters.flush-interval=1h",
+        "blog.counters.reconcile-interval=1h"
+})
+@ActiveProfiles("test")
+class PublishedPostCountersTests extends BlogTestFixture {
+
+    @Autowired
+    private PublishedPostCounters publishedPostCounters;
+
+    @MockitoSpyBean
+    private PublishedPostCountRepository publishedPostCountRepository;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //A 是 BlogTestFixture 建立的分類
+    private UUID categoryA;
+
+    private UUID categoryB;
+
+    private UUID tag1;
+
+    private UUID tag2;
+
+    private UUID tag3;
+
+    @BeforeEach
+    void setUp() {
+        categoryA = categoryId;
+        categoryB = categoryService.createCategory(new CreateCategoryRequest("b-" + suffix)).getId();
+        Map<String, UUID> tags = tagService.createTags(Set.of("t1-" + suffix, "t2-" + suffix, "t3-" + suffix))
+                .stream()
+                .collect(Collectors.toMap(TagDto::getName, TagDto::getId));
+        tag1 = tags.get("t1-" + suffix);
+        tag2 = tags.get("t2-" + suffix);
+        tag3 = tags.get("t3-" + suffix);
+        publishedPostCounters.flush();
+    }
+
+    @Test
+    void lifecycleEventsProduceCorrectCounts() {
+        PostDto published = this.createPost("published", categoryA, Set.of(tag1, tag2), PostStatus.PUBLISHED);
+        PostDto draft = this.createPost("draft", categoryA, Set.of(tag1), PostStatus.DRAFT);
+
+        //flush 之前不會寫入
+        this.assertCounts(0, 0, 0, 0, 0);
+        publishedPostCounters.flush();
+        this.assertCounts(1, 0, 1, 1, 0);
+
+        //發布草稿並移到 B
+        postService.patchPost(draft.getId(), null, PatchPostRequestDto.builder().status(PostStatus.PUBLISHED).categoryId(categoryB).build());
+        //重新設定標籤：t1、t2 -> t3
+        postService.patchPost(published.getId(), null, PatchPostRequestDto.builder().tagsIds(Set.of(tag3)).build());
+        publishedPostCounters.flush();
+        this.assertCounts(1, 1, 1, 0, 1);
+
+        //取消發布後再發布，增減量相加為 0
+        postService.patchPost(published.getId(), null, PatchPostRequestDto.builder().status(PostStatus.DRAFT).build());
+        postService.patchPost(published.getId(), null, PatchPostRequestDto.builder().status(PostStatus.PUBLISHED).build());
+        publishedPostCounters.flush();
+        this.assertCounts(1, 1, 1, 0, 1);
+
+        postService.patchPost(published.getId(), null, PatchPostRequestDto.builder().status(PostStatus.DRAFT).build());
+        postService.deletePost(draft.getId());
+        publishedPostCounters.flush();
+        this.assertCounts(0, 0, 0, 0, 0);
+
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+    }
+
+    //event bus 在 linger 期間把同一篇文章的新增與刪除合併成一個事件：before 與 after 都是 null，不產生增減量
+    @Test
+    void coalescedCreateAndDeleteLeavesCountsUnchanged() {
+        UUID postId = UUID.randomUUID();
+        PostState state = new PostState(PostStatus.PUBLISHED, categoryA, Set.of(tag1));
+        PostEvent created = new PostEvent(postId, null, null, state, Instant.now());
+        PostEvent deleted = new PostEvent(postId, null, state, null, Instant.now());
+
+        PostEvent coalesced = created.coalesce(deleted);
+        assertNull(coalesced.before());
+        assertNull(coalesced.after());
+
+        publishedPostCounters.onPostEvents(List.of(coalesced));
+        assertEquals(0, this.pending());
+
+        //合併的是發布後再刪除：before 已發布，增減量為 -1
+        PostEvent publishedThenDeleted = new PostEvent(postId, null, state, state, Instant.now()).coalesce(deleted);
+        publishedPostCounters.onPostEvents(List.of(created, publishedThenDeleted));
+        assertEquals(0, this.pending());
+    }
+
+    @Test
+    void failedFlushRequeuesDeltas() {
+        this.createPost("retry", categoryA, Set.of(tag1), PostStatus.PUBLISHED);
+
+        doThrow(new DataAccessResourceFailureException("database is down"))
+                .when(publishedPostCountRepository).addTagCounts(any());
+        publishedPostCounters.flush();
+
+        //分類與標籤在同一個交易寫入，兩者都沒有寫入，增減量放回記憶體
+        this.assertCounts(0, 0, 0, 0, 0);
+        assertEquals(2, this.pending());
+
+        //寫入失敗期間的新事件與放回的增減量合併
+        this.createPost("while down", categoryA, Set.of(tag1), PostStatus.PUBLISHED);
+
+        doCallRealMethod().when(publishedPostCountRepository).addTagCounts(any());
+        publishedPostCounters.flush();
+        this.assertCounts(2, 0, 2, 0, 0);
+        assertEquals(0, this.pending());
+    }
+
+    @Test
+    void reconcileFixesDrift() {
+        this.createPost("drift", categoryA, Set.of(tag1, tag2), PostStatus.PUBLISHED);
+        publishedPostCounters.reconcile();
+        double driftBefore = this.drift("category") + this.drift("tag");
+
+        //例如程序在 flush 之前結束，或直接修改資料庫
+        jdbcTemplate.update("UPDATE categories SET published_post_count = 5 WHERE id = ?", categoryA);
+        jdbcTemplate.update("UPDATE tags SET published_post_count = 0 WHERE id = ?", tag2);
+
+        assertEquals(new PublishedPostCounters.Drift(1, 1), publishedPostCounters.reconcile());
+        this.assertCounts(1, 0, 1, 1, 0);
+        assertEquals(driftBefore + 4 + 1, this.drift("category") + this.drift("tag"));
+
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+    }
+
+    //尚未寫入的增減量會被 reconcile 略過，直到寫入之後才校正
+    @Test
+    void reconcileFlushesPendingDeltasFirst() {
+        this.createPost("pending", categoryB, Set.of(tag3), PostStatus.PUBLISHED);
+
+        assertEquals(new PublishedPostCounters.Drift(0, 0), publishedPostCounters.reconcile());
+        this.assertCounts(0, 1, 0, 0, 1);
+    }
+
+    private PostDto createPost(String title, UUID categoryId, Set<UUID> tagIds, PostStatus status) {
+        return postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(title + " " + suffix)
+                .content("content of " + title)
+                .categoryId(categoryId)
+                .tagsId(tagIds)
+                .status(status)
+                .build());
+    }
+
+    private void assertCounts(long a, long b, long t1, long t2, long t3) {
+        Map<UUID, Long> categories = categoryRepository.findAllWithPostCount().stream()
+                .collect(Collectors.toMap(CategoryDto::getId, CategoryDto::getPostCount));
+        Map<UUID, Long> tags = tagRepository.findAllWithPostCount().stream()
+                .collect(Collectors.toMap(TagDto::getId, TagDto::getPostCount));
+
+        assertEquals(List.of(a, b, t1, t2, t3), List.of(
+                categories.get(categoryA), categories.get(categoryB), tags.get(tag1), tags.get(tag2), tags.get(tag3)));
+    }
+
+    //尚未寫入的分類與標籤數
+    private double pending() {
+        return meterRegistry.get("published.post.count.pending").gauges().stream()
+                .mapToDouble(gauge -> gauge.value())
+                .sum();
+    }
+
+    private double drift(String type) {
+        return meterRegistry.get("published.post.count.drift").tag("type", type).counter().count();
+    }
+}
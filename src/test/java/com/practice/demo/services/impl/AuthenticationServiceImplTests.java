@@ -0,0 +1,136 @@
+package com.practice.demo.services.impl;
+
+import com.practice.demo.repositories.RevokedTokenRepository;
+import com.practice.demo.repositories.UsedRefreshTokenRepository;
+import com.practice.demo.repositories.UserRepository;
+import com.practice.demo.security.BlogUserDetails;
+import com.practice.demo.services.AuthenticationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//同時送出多個相同 email 的註冊，只能有一個成功，其餘都要因為 unique constraint 得到 409（IllegalStateException）
+@SpringBootTest(properties = "blog.auth.hashing.threads=8")
+@ActiveProfiles("test")
+class AuthenticationServiceImplTests {
+
+    private static final int REGISTRATIONS = 8;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private UsedRefreshTokenRepository usedRefreshTokenRepository;
+
+    @Test
+    void concurrentDuplicateRegistrationsCreateOneUser() throws Exception {
+        List<Throwable> failures = this.registerConcurrently(i -> authenticationService.register("duplicate@example.com", "password", "duplicate-" + i));
+
+        assertEquals(REGISTRATIONS - 1, failures.size());
+        failures.forEach(failure -> {
+            assertInstanceOf(IllegalStateException.class, failure);
+            assertEquals("Email already in use", failure.getMessage());
+        });
+        assertTrue(userRepository.existsByEmail("duplicate@example.com"));
+    }
+
+    @Test
+    void concurrentDuplicateNamesCreateOneUser() throws Exception {
+        List<Throwable> failures = this.registerConcurrently(i -> authenticationService.register("same-name-" + i + "@example.com", "password", "same-name"));
+
+        assertEquals(REGISTRATIONS - 1, failures.size());
+        failures.forEach(failure -> assertEquals("Name already in use", failure.getMessage()));
+    }
+
+    //不是 email / name 重複的錯誤（例如超過欄位長度）不能回報成名稱已被使用
+    @Test
+    void otherIntegrityViolationsAreNotReportedAsDuplicates() {
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> authenticationService.register("too-long-name@example.com", "password", "x".repeat(300)).join());
+
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        assertFalse(userRepository.existsByEmail("too-long-name@example.com"));
+    }
+
+    @Test
+    void registerReturnsSavedUser() {
+        UserDetails userDetails = authenticationService.register("new-user@example.com", "password", "new-user").join();
+
+        BlogUserDetails blogUserDetails = assertInstanceOf(BlogUserDetails.class, userDetails);
+        assertEquals(userRepository.findByEmail("new-user@example.com").orElseThrow().getId(), blogUserDetails.getId());
+        assertEquals("new-user", blogUserDetails.getName());
+    }
+
+    //refresh token 只能換發一次；已使用的 refresh token 只記錄在 used_refresh_tokens，登出的 access token 才會加入撤銷清單
+    @Test
+    void refreshTokenCanBeUsedOnce() {
+        UserDetails user = authenticationService.register("refresh@example.com", "password", "refresh").join();
+        AuthenticationService.AuthTokens tokens = authenticationService.issueTokens(user);
+        long revoked = revokedTokenRepository.count();
+        long used = usedRefreshTokenRepository.count();
+
+        AuthenticationService.AuthTokens refreshed = authenticationService.refresh(tokens.refreshToken());
+        assertThrows(BadCredentialsException.class, () -> authenticationService.refresh(tokens.refreshToken()));
+        assertEquals(used + 1, usedRefreshTokenRepository.count());
+        assertEquals(revoked, revokedTokenRepository.count());
+
+        authenticationService.logout(refreshed.accessToken(), refreshed.refreshToken());
+        assertThrows(BadCredentialsException.class, () -> authenticationService.refresh(refreshed.refreshToken()));
+        assertEquals(used + 2, usedRefreshTokenRepository.count());
+        assertEquals(revoked + 1, revokedTokenRepository.count());
+    }
+
+    //所有註冊在同一時間開始，回傳失敗的例外
+    private List<Throwable> registerConcurrently(Registration registration) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(REGISTRATIONS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<CompletableFuture<UserDetails>>> submitted = new ArrayList<>();
+            for (int i = 0; i < REGISTRATIONS; i++) {
+                int index = i;
+                submitted.add(callers.submit(() -> {
+                    start.await();
+                    return registration.register(index);
+                }));
+            }
+            start.countDown();
+
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<CompletableFuture<UserDetails>> future : submitted) {
+                try {
+                    future.get().join();
+                } catch (CompletionException ex) {
+                    failures.add(ex.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private interface Registration {
+        CompletableFuture<UserDetails> register(int index);
+    }
+}
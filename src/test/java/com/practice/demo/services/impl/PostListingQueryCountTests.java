@@ -0,0 +1,103 @@
+package com.practice.demo.services.impl;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.Config.CacheConfig;
+import com.practice.demo.domain.CursorPage;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PostSummaryDto;
+import com.practice.demo.services.PostService;
+import com.practice.demo.services.TagService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//列表的 SQL 數量不隨頁面大小增加（沒有 N+1）：一次查詢這一頁的列表欄位，一次 IN 查詢這一頁的標籤
+//以 Hibernate Statistics 計算 prepared statement 數，使用獨立的資料庫
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statements;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ActiveProfiles("test")
+class PostListingQueryCountTests extends BlogTestFixture {
+
+    private static final int POSTS = 30;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private UUID tagId;
+
+    private UUID postId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Set<UUID> tagIds = Set.of(
+                tagService.createTags(Set.of("a-" + suffix)).getFirst().getId(),
+                tagService.createTags(Set.of("b-" + suffix)).getFirst().getId());
+        tagId = tagIds.iterator().next();
+
+        for (int i = 0; i < POSTS; i++) {
+            postId = postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                    .title("post " + i + " " + suffix)
+                    .content("content of post " + i)
+                    .categoryId(categoryId)
+                    .tagsId(tagIds)
+                    .status(i % 3 == 0 ? PostStatus.DRAFT : PostStatus.PUBLISHED)
+                    .build()).getId();
+        }
+    }
+
+    @Test
+    void listingRunsTwoStatementsPerPage() {
+        for (int size : new int[]{5, 20}) {
+            CursorPage<PostSummaryDto> page = this.assertStatements(2, () -> postService.getAllPosts(null, null, null, size));
+            assertEquals(size, page.getItems().size());
+            assertTrue(page.getItems().stream().allMatch(post -> post.getTags().size() == 2));
+
+            this.assertStatements(2, () -> postService.getAllPosts(null, null, page.getNextCursor(), size));
+            this.assertStatements(2, () -> postService.getAllPosts(categoryId, null, null, size));
+            this.assertStatements(2, () -> postService.getAllPosts(null, tagId, null, size));
+            this.assertStatements(2, () -> postService.getDraftPosts(author.getId(), null, size));
+        }
+    }
+
+    //文章內容以一次查詢載入作者、分類與標籤
+    @Test
+    void postDetailRunsOneStatement() {
+        cacheManager.getCache(CacheConfig.POST_BY_ID).evict(postId);
+
+        assertEquals(postId, this.assertStatements(1, () -> postService.getPost(postId)).getId());
+    }
+
+    private <T> T assertStatements(long expected, Supplier<T> query) {
+        statistics.clear();
+        T result = query.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+}
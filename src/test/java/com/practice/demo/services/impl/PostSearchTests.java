@@ -0,0 +1,118 @@
+package com.practice.demo.services.impl;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.CursorPage;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PostSearchResultDto;
+import com.practice.demo.services.PostService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//全文搜尋（H2 以 LIKE 比對）：相關度排序、只搜尋已發布的文章、輸出只有 <mark> 標籤、同分時的 keyset 分頁
+//每個測試以隨機的字詞搜尋，不會找到其他測試的文章
+@SpringBootTest
+@ActiveProfiles("test")
+class PostSearchTests extends BlogTestFixture {
+
+    @Autowired
+    private PostService postService;
+
+    private String term;
+
+    @BeforeEach
+    void setUp() {
+        term = "kw" + suffix;
+    }
+
+    @Test
+    void titleHitsRankAboveContentHitsAndDraftsAreExcluded() {
+        UUID contentHit = this.createPost("content only " + suffix, "the body mentions " + term + " once", PostStatus.PUBLISHED);
+        UUID titleHit = this.createPost(term + " in the title", "nothing relevant in the body", PostStatus.PUBLISHED);
+        UUID bothHit = this.createPost("both " + term, "and the body repeats " + term, PostStatus.PUBLISHED);
+        this.createPost("draft " + term, "draft body with " + term, PostStatus.DRAFT);
+
+        List<PostSearchResultDto> results = postService.searchPosts(term, null, 10).getItems();
+
+        assertEquals(List.of(bothHit, titleHit, contentHit), results.stream().map(result -> result.getPost().getId()).toList());
+        assertTrue(results.get(0).getScore() > results.get(1).getScore());
+        assertTrue(results.get(1).getScore() > results.get(2).getScore());
+        assertTrue(results.stream().allMatch(result -> result.getPost().getPostStatus() == PostStatus.PUBLISHED));
+    }
+
+    @Test
+    void highlightedOutputIsEscapedAndOnlyContainsMarkTags() {
+        String upperTerm = term.toUpperCase();
+        this.createPost("Fish & <chips> " + upperTerm,
+                "<p class=\"x\">Intro <script>alert('x')</script> &amp; <b>" + upperTerm + "</b> \"quoted\" a < b</p>",
+                PostStatus.PUBLISHED);
+
+        PostSearchResultDto result = postService.searchPosts(term, null, 10).getItems().get(0);
+
+        //比對不分大小寫，標記保留原本的大小寫
+        assertEquals("Fish &amp; &lt;chips&gt; <mark>" + upperTerm + "</mark>", result.getHighlightedTitle());
+        assertTrue(result.getSnippet().contains("<mark>" + upperTerm + "</mark>"), result.getSnippet());
+        //文章的 HTML 標籤去掉，其餘的字元 escape
+        assertTrue(result.getSnippet().contains("a &lt; b"), result.getSnippet());
+        for (String html : List.of(result.getHighlightedTitle(), result.getSnippet())) {
+            String withoutMarks = html.replace("<mark>", "").replace("</mark>", "");
+            assertFalse(withoutMarks.contains("<") || withoutMarks.contains(">"), html);
+        }
+    }
+
+    @Test
+    void keysetPagingOverTiedRanksNeitherRepeatsNorSkips() {
+        Set<UUID> expected = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            //內容符合的文章 rank 都相同，只能依 id 排序
+            expected.add(this.createPost("tied " + i + " " + suffix, "content hit " + term + " " + i, PostStatus.PUBLISHED));
+        }
+        for (int i = 0; i < 2; i++) {
+            expected.add(this.createPost(term + " title " + i, "content body " + i, PostStatus.PUBLISHED));
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        float lastScore = Float.MAX_VALUE;
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<PostSearchResultDto> page = postService.searchPosts(term, cursor, 2);
+            for (PostSearchResultDto result : page.getItems()) {
+                assertTrue(result.getScore() <= lastScore);
+                lastScore = result.getScore();
+                seen.add(result.getPost().getId());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+
+            //第一頁之後新增一篇排在前面的文章：游標之後的結果不會因此重複或位移
+            if (pages == 1) {
+                this.createPost(term + " late title", "content " + term, PostStatus.PUBLISHED);
+            }
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(expected.size(), seen.size());
+        assertEquals(expected, new HashSet<>(seen));
+    }
+
+    private UUID createPost(String title, String content, PostStatus status) {
+        return postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(title)
+                .content(content)
+                .categoryId(categoryId)
+                .status(status)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,161 @@
+package com.practice.demo.services.impl;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.PatchPostRequestDto;
+import com.practice.demo.domain.dtos.PostDto;
+import com.practice.demo.domain.dtos.UpdatePostRequestDto;
+import com.practice.demo.domain.entities.Post;
+import com.practice.demo.repositories.PostRepository;
+import com.practice.demo.services.PostService;
+import com.practice.demo.services.PostTextAnalyzer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//多個編輯者同時整篇更新同一篇文章，每個人都以讀取到的 version 更新，衝突時重新讀取再試，最後每個人的修改都要保留
+@SpringBootTest
+@ActiveProfiles("test")
+class PostServiceImplTests extends BlogTestFixture {
+
+    private static final int EDITORS = 8;
+
+    private static final int EDITS_PER_EDITOR = 5;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentEditsDoNotLoseUpdates() throws Exception {
+        PostDto post = this.createPost();
+
+        ExecutorService editors = Executors.newFixedThreadPool(EDITORS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> conflicts = new ArrayList<>();
+            for (int i = 0; i < EDITORS; i++) {
+                int editor = i;
+                conflicts.add(editors.submit(() -> {
+                    start.await();
+                    int editorConflicts = 0;
+                    for (int edit = 0; edit < EDITS_PER_EDITOR; edit++) {
+                        while (!this.appendLine(post.getId(), "editor-" + editor + "-edit-" + edit)) {
+                            editorConflicts++;
+                        }
+                    }
+                    return editorConflicts;
+                }));
+            }
+            start.countDown();
+
+            int totalConflicts = 0;
+            for (Future<Integer> future : conflicts) {
+                totalConflicts += future.get();
+            }
+
+            Post saved = postRepository.findById(post.getId()).orElseThrow();
+            for (int editor = 0; editor < EDITORS; editor++) {
+                for (int edit = 0; edit < EDITS_PER_EDITOR; edit++) {
+                    assertTrue(saved.getContent().contains("editor-" + editor + "-edit-" + edit + "\n"),
+                            "lost update editor-" + editor + "-edit-" + edit + " (" + totalConflicts + " conflicts)");
+                }
+            }
+            //每次成功的更新剛好增加一次版本
+            assertEquals(post.getVersion() + EDITORS * EDITS_PER_EDITOR, saved.getVersion());
+        } finally {
+            editors.shutdownNow();
+        }
+    }
+
+    @Test
+    void updateWithStaleVersionIsRejected() {
+        PostDto post = this.createPost();
+
+        postService.updatePost(post.getId(), this.updateRequest(post.getTitle(), "first editor content", post.getVersion()));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> postService.updatePost(post.getId(), this.updateRequest(post.getTitle(), "second editor content", post.getVersion())));
+
+        Post saved = postRepository.findById(post.getId()).orElseThrow();
+        assertEquals("first editor content", saved.getContent());
+        assertEquals(post.getVersion() + 1, saved.getVersion());
+    }
+
+    //controller 判斷 If-Match 之後、service 載入文章之前被修改：service 以載入的版本再比對一次
+    @Test
+    void patchWithStaleVersionIsRejected() {
+        PostDto post = this.createPost();
+        postService.patchPost(post.getId(), post.getVersion(), PatchPostRequestDto.builder().content("first editor content").build());
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> postService.patchPost(post.getId(), post.getVersion(), PatchPostRequestDto.builder().content("second editor content").build()));
+
+        Post saved = postRepository.findById(post.getId()).orElseThrow();
+        assertEquals("first editor content", saved.getContent());
+        assertEquals(post.getVersion() + 1, saved.getVersion());
+    }
+
+    //模擬雜湊碰撞：儲存的 contentHash 與新內容的雜湊相同，內容不同仍然要更新
+    @Test
+    void editIsAppliedWhenContentHashesCollide() {
+        PostDto post = this.createPost();
+        String edited = "edited content with the same hash\n";
+        jdbcTemplate.update("UPDATE posts SET content_hash = ? WHERE id = ?", PostTextAnalyzer.contentHash(edited), post.getId());
+
+        PostDto patched = postService.patchPost(post.getId(), null, PatchPostRequestDto.builder().content(edited).build());
+
+        assertEquals(edited, patched.getContent());
+        assertEquals(edited, postRepository.findById(post.getId()).orElseThrow().getContent());
+        assertEquals(post.getVersion() + 1, patched.getVersion());
+    }
+
+    private PostDto createPost() {
+        return postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title("post-" + UUID.randomUUID())
+                .content("initial content\n")
+                .categoryId(categoryId)
+                .status(PostStatus.DRAFT)
+                .build());
+    }
+
+    //讀取目前的內容與 version，加上一行後整篇更新；版本衝突時回傳 false
+    private boolean appendLine(UUID postId, String line) {
+        Post current = postRepository.findById(postId).orElseThrow();
+        try {
+            postService.updatePost(postId, this.updateRequest(current.getTitle(), current.getContent() + line + "\n", current.getVersion()));
+            return true;
+        } catch (OptimisticLockingFailureException ex) {
+            return false;
+        }
+    }
+
+    private UpdatePostRequestDto updateRequest(String title, String content, Long version) {
+        return UpdatePostRequestDto.builder()
+                .title(title)
+                .content(content)
+                .categoryId(categoryId)
+                .status(PostStatus.DRAFT)
+                .version(version)
+                .build();
+    }
+}
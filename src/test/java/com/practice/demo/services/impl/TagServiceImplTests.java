@@ -0,0 +1,114 @@
+package com.practice.demo.services.impl;
+
+import com.practice.demo.BlogTestFixture;
+import com.practice.demo.domain.PostStatus;
+import com.practice.demo.domain.dtos.CreatePostRequestDto;
+import com.practice.demo.domain.dtos.TagDto;
+import com.practice.demo.domain.entities.Tag;
+import com.practice.demo.repositories.PostRepository;
+import com.practice.demo.repositories.TagNameNormalization;
+import com.practice.demo.repositories.TagRepository;
+import com.practice.demo.services.PostService;
+import com.practice.demo.services.TagService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//正規化之前建立的 tag（名稱有大寫、全形或多餘空白）在啟動時改成正規化的名稱，之後各種寫法都對應到同一個 tag
+@SpringBootTest
+@ActiveProfiles("test")
+class TagServiceImplTests extends BlogTestFixture {
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private TagNameNormalization tagNameNormalization;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void spellingsResolveToOnePreExistingTag() {
+        String name = "Java" + suffix;
+        //直接寫入資料庫，模擬正規化之前建立的 tag
+        UUID existingId = tagRepository.save(Tag.builder().name(name).build()).getId();
+
+        tagNameNormalization.normalizeExistingNames();
+
+        for (String spelling : List.of(name, " " + name.toLowerCase() + " ", this.fullWidth(name))) {
+            List<TagDto> tags = tagService.createTags(Set.of(spelling));
+            assertEquals(1, tags.size(), spelling);
+            assertEquals(existingId, tags.get(0).getId(), spelling);
+            assertEquals(name.toLowerCase(), tags.get(0).getName(), spelling);
+        }
+        assertEquals(1, tagRepository.findAll().stream()
+                .filter(tag -> Tag.normalizeName(tag.getName()).equals(name.toLowerCase()))
+                .count());
+    }
+
+    //正規化後相同的 tag 合併成一個，文章關聯移到保留的 tag，同時有兩個 tag 的文章只留一筆關聯
+    @Test
+    void duplicateSpellingsAreMergedWithTheirPosts() {
+        Tag normalized = tagRepository.save(Tag.builder().name("spring " + suffix).build());
+        Tag upperCase = tagRepository.save(Tag.builder().name("Spring  " + suffix.toUpperCase()).build());
+        Tag fullWidth = tagRepository.save(Tag.builder().name(this.fullWidth("SPRING " + suffix)).build());
+
+        UUID first = this.createPost("first", Set.of(upperCase.getId()));
+        UUID both = this.createPost("both", Set.of(normalized.getId(), fullWidth.getId()));
+
+        assertEquals(2, tagNameNormalization.normalizeExistingNames());
+
+        assertTrue(tagRepository.findById(normalized.getId()).isPresent());
+        assertFalse(tagRepository.existsById(upperCase.getId()));
+        assertFalse(tagRepository.existsById(fullWidth.getId()));
+        assertEquals(Set.of(normalized.getId()), this.tagIds(first));
+        assertEquals(Set.of(normalized.getId()), this.tagIds(both));
+
+        //已經正規化，再執行一次不會改變任何東西
+        assertEquals(0, tagNameNormalization.normalizeExistingNames());
+    }
+
+    private UUID createPost(String title, Set<UUID> tagIds) {
+        return postService.createPost(author.getId(), CreatePostRequestDto.builder()
+                .title(title + " " + suffix)
+                .content("content")
+                .categoryId(categoryId)
+                .tagsId(tagIds)
+                .status(PostStatus.PUBLISHED)
+                .build()).getId();
+    }
+
+    private Set<UUID> tagIds(UUID postId) {
+        return transactionTemplate.execute(status -> postRepository.findById(postId).orElseThrow()
+                .getTags()
+                .stream()
+                .map(Tag::getId)
+                .collect(Collectors.toSet()));
+    }
+
+    //半形 ASCII 轉成對應的全形字元
+    private String fullWidth(String name) {
+        StringBuilder builder = new StringBuilder();
+        name.chars().forEach(c -> builder.append(c > ' ' && c <= '~' ? (char) (c + 0xFEE0) : (char) c));
+        return builder.toString();
+    }
+}